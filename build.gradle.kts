@@ -9,12 +9,18 @@ repositories {
     mavenCentral()
 }
 
+// Annotation processor generating the RecordCodec of every @Record / @Database class.
+// Compiled before main and shipped inside the library jar, so consumers only need
+// annotationProcessor(...) on this library to get codecs for their own records.
+val processor: SourceSet by sourceSets.creating
+
 dependencies {
     testImplementation(platform("org.junit:junit-bom:5.10.0"))
     testImplementation("org.junit.jupiter:junit-jupiter")
 
     compileOnly("org.projectlombok:lombok:1.18.42")
     annotationProcessor("org.projectlombok:lombok:1.18.42")
+    annotationProcessor(processor.output)
 
     testCompileOnly("org.projectlombok:lombok:1.18.42")
     testAnnotationProcessor("org.projectlombok:lombok:1.18.42")
@@ -44,6 +50,7 @@ tasks.jar {
             "Implementation-Version" to project.version
         )
     }
+    from(processor.output)
     // Let Gradle use the default output directory (build/libs)
     destinationDirectory.set(file("."))
     // Let Gradle use the default archive file name ({project.name}-{project.version}.jar)
@@ -2,9 +2,13 @@ package me.hysong.libcodablejdbc;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 
 public class RSCodableUtil {
     public static boolean isMarkedMappingElement(Field f) {
+        if (Modifier.isStatic(f.getModifiers()) || f.isSynthetic()) {
+            return false;
+        }
         return (f.getDeclaringClass().isAnnotationPresent(Record.class) && !f.isAnnotationPresent(NotColumn.class))
                 || f.isAnnotationPresent(Column.class);
     }
@@ -0,0 +1,130 @@
+package me.hysong.libcodablejdbc.dev_example;
+
+import me.hysong.libcodablejdbc.Database;
+import me.hysong.libcodablejdbc.PrimaryKey;
+import me.hysong.libcodablejdbc.RSCodableUtil;
+import me.hysong.libcodablejdbc.Record;
+import me.hysong.libcodablejdbc.utils.objects.DatabaseRecord;
+import me.hysong.libcodablejdbc.utils.objects.RecordMetadata;
+import me.hysong.libcodablejdbc.utils.objects.RowDecoderPlan;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * Rough rows/sec comparison of row hydration on a 20-column record, without a database.
+ * <p>
+ * "before" replays what objectifyCurrentRow used to do for every row (field and annotation walk,
+ * findColumn, setAccessible, boxed Field.set); "after" is the current objectifyCurrentRow with a
+ * decoder plan built once per result set, as the table service templates do.
+ * Both read from the same in-memory ResultSet stub, so only the mapping overhead differs.
+ * "after" goes through the generated codec of WideRecord; add -Dlibcodablejdbc.codecs=false to measure
+ * the accessor-based path instead.
+ * Run with: java me.hysong.libcodablejdbc.dev_example.HydrationBenchmark [rows]
+ */
+public class HydrationBenchmark {
+
+    @Record
+    @Database(db = "bench", table = "wide")
+    @PrimaryKey(column = "id")
+    public static class WideRecord extends DatabaseRecord {
+        private int id;
+        private int i1, i2, i3, i4, i5;
+        private long l1, l2, l3, l4;
+        private double d1, d2, d3, d4;
+        private boolean b1, b2;
+        private String s1, s2, s3, s4;
+
+        public WideRecord() {
+            super(null);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        ResultSet rs = stubResultSet();
+
+        // Warm-up both paths before measuring
+        for (int i = 0; i < 3; i++) {
+            runBefore(rs, rows / 4);
+            runAfter(rs, rows / 4);
+        }
+
+        long before = runBefore(rs, rows);
+        long after = runAfter(rs, rows);
+        System.out.printf("before: %,d rows/sec%n", rows * 1_000_000_000L / before);
+        System.out.printf("after : %,d rows/sec%n", rows * 1_000_000_000L / after);
+    }
+
+    private static long runBefore(ResultSet rs, int rows) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < rows; i++) {
+            legacyObjectify(new WideRecord(), rs);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long runAfter(ResultSet rs, int rows) throws SQLException {
+        long start = System.nanoTime();
+        RowDecoderPlan plan = RowDecoderPlan.of(RecordMetadata.of(WideRecord.class), rs);
+        for (int i = 0; i < rows; i++) {
+            new WideRecord().objectifyCurrentRow(0, rs, plan);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void legacyObjectify(Object target, ResultSet rs) throws SQLException, IllegalAccessException {
+        for (Field field : target.getClass().getDeclaredFields()) {
+            if (!RSCodableUtil.isMarkedMappingElement(field)) {
+                continue;
+            }
+            String columnName = RSCodableUtil.getFieldNameInDB(field);
+            Class<?> fieldType = field.getType();
+            rs.findColumn(columnName);
+            field.setAccessible(true);
+            Object value;
+            if (fieldType == int.class) {
+                value = rs.getInt(columnName);
+            } else if (fieldType == long.class) {
+                value = rs.getLong(columnName);
+            } else if (fieldType == double.class) {
+                value = rs.getDouble(columnName);
+            } else if (fieldType == boolean.class) {
+                value = rs.getBoolean(columnName);
+            } else {
+                value = rs.getString(columnName);
+            }
+            field.set(target, value);
+        }
+    }
+
+    private static ResultSet stubResultSet() {
+        String[] labels = RecordMetadata.of(WideRecord.class).getColumns().stream()
+                .map(column -> column.getColumnName())
+                .toArray(String[]::new);
+        ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(
+                HydrationBenchmark.class.getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getColumnCount" -> labels.length;
+                    case "getColumnLabel" -> labels[(Integer) args[0] - 1];
+                    default -> null;
+                });
+        return (ResultSet) Proxy.newProxyInstance(
+                HydrationBenchmark.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getMetaData" -> metaData;
+                    case "findColumn" -> 1;
+                    case "getInt" -> 42;
+                    case "getLong" -> 42L;
+                    case "getDouble" -> 4.2d;
+                    case "getBoolean", "wasNull" -> false;
+                    case "getString" -> "value";
+                    default -> null;
+                });
+    }
+}
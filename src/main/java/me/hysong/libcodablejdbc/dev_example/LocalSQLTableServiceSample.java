@@ -1,12 +1,29 @@
 package me.hysong.libcodablejdbc.dev_example;
 
 import me.hysong.libcodablejdbc.utils.dbtemplates.MySQLTableServiceTemplate;
+import me.hysong.libcodablejdbc.utils.objects.AsyncExecutor;
+import me.hysong.libcodablejdbc.utils.objects.ConnectionPool;
+import me.hysong.libcodablejdbc.utils.objects.RecordCache;
 
 import java.sql.*;
+import java.time.Duration;
 
 public class LocalSQLTableServiceSample implements MySQLTableServiceTemplate {
 
-    private static Connection con;
+    // Shared by every service instance; connections are borrowed per call and given back by the template
+    private static final ConnectionPool pool = new ConnectionPool(database -> {
+        String url = "jdbc:mariadb://localhost:3306/" + database;
+        String user = "test";
+        String passwd = "testpasswd";
+        return DriverManager.getConnection(url, user, passwd);
+    }, 16);
+
+    // Async operations never wait for more connections than the pool holds
+    private static final AsyncExecutor async = new AsyncExecutor(16);
+
+    // Users are read by primary key far more often than they change
+    private static final RecordCache cache = new RecordCache()
+            .cache(ExampleUser.class, 10_000, Duration.ofMinutes(5), Duration.ofSeconds(30));
 
     public LocalSQLTableServiceSample() {
         // This construction is called very frequently so DO NOT make connection here
@@ -14,17 +31,21 @@ public class LocalSQLTableServiceSample implements MySQLTableServiceTemplate {
 
     @Override
     public Connection getConnection(String database) throws SQLException {
-        String url = "jdbc:mariadb://localhost:3306/" + database;
-        String user = "test";
-        String passwd = "testpasswd";
-        if (con == null || con.isClosed()) {
-            try {
-                Class.forName("org.mariadb.jdbc.Driver");
-                con = DriverManager.getConnection(url, user, passwd);
-            } catch (ClassNotFoundException e) {
-                e.printStackTrace();
-            }
-        }
-        return con;
+        return pool.borrow(database);
+    }
+
+    @Override
+    public void releaseConnection(String database, Connection connection) {
+        pool.release(database, connection);
+    }
+
+    @Override
+    public RecordCache getRecordCache() {
+        return cache;
+    }
+
+    @Override
+    public AsyncExecutor getAsyncExecutor() {
+        return async;
     }
 }
@@ -1,23 +1,36 @@
 package me.hysong.libcodablejdbc.utils.dbtemplates;
 
-import me.hysong.libcodablejdbc.Automatic;
-import me.hysong.libcodablejdbc.Column;
-import me.hysong.libcodablejdbc.PseudoEnum;
 import me.hysong.libcodablejdbc.utils.exceptions.InitializationViolationException;
 import me.hysong.libcodablejdbc.utils.exceptions.JDBCReflectionGeneralException;
 import me.hysong.libcodablejdbc.utils.interfaces.DatabaseTableService;
 import me.hysong.libcodablejdbc.utils.interfaces.ResultSetProcessor;
+import me.hysong.libcodablejdbc.utils.objects.ColumnMetadata;
 import me.hysong.libcodablejdbc.utils.objects.DatabaseRecord;
+import me.hysong.libcodablejdbc.utils.objects.ForeignKeyJoin;
+import me.hysong.libcodablejdbc.utils.objects.ForeignKeyResolver;
+import me.hysong.libcodablejdbc.utils.objects.PrivilegeView;
+import me.hysong.libcodablejdbc.utils.objects.QueryOptions;
+import me.hysong.libcodablejdbc.utils.objects.QueryResultCache;
+import me.hysong.libcodablejdbc.utils.objects.RecordCache;
+import me.hysong.libcodablejdbc.utils.objects.RecordCursor;
+import me.hysong.libcodablejdbc.utils.objects.RecordMetadata;
+import me.hysong.libcodablejdbc.utils.objects.RecordPublisher;
+import me.hysong.libcodablejdbc.utils.objects.RecordSession;
+import me.hysong.libcodablejdbc.utils.objects.RowDecoderPlan;
 import me.hysong.libcodablejdbc.utils.objects.SearchExpression;
+import me.hysong.libcodablejdbc.utils.objects.SqlTemplateCache;
+import me.hysong.libcodablejdbc.utils.objects.SqlTemplateCache.SqlTemplate;
+import me.hysong.libcodablejdbc.utils.objects.SqlTemplateCache.TemplateBuilder;
 
 import java.io.IOException;
-import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.*;
+import java.util.stream.Stream;
 
 /**
  * A template interface for SQLite database table services. It provides default
@@ -26,7 +39,43 @@ import java.util.*;
 public interface MySQLTableServiceTemplate extends DatabaseTableService {
 
     /**
-     * Retrieves all columns for a single row identified by its primary key.
+     * Upper bound of placeholders in one statement; MySQL rejects prepared statements with more than 65535.
+     */
+    int MAX_STATEMENT_PARAMETERS = 65535;
+
+    /**
+     * Fetch size that makes MySQL Connector/J stream rows one by one instead of buffering the whole result.
+     */
+    int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+
+    /**
+     * IN lists up to this size are padded to a power of two, longer ones to a multiple of it.
+     */
+    int IN_LIST_BUCKET_STEP = 1024;
+
+    /**
+     * Number of placeholders of an IN list of the given size. The list is padded by repeating its last value,
+     * so a handful of SQL strings cover every list length and the server and client statement caches keep
+     * hitting. MySQL has no array parameters, so lists are always expanded to one placeholder per value;
+     * override to change the buckets. Lists are not padded when the padding would take the statement over
+     * {@link #MAX_STATEMENT_PARAMETERS} parameters.
+     *
+     * @param size The number of values in the list.
+     * @return The number of placeholders, at least {@code size}.
+     */
+    default int inListSize(int size) {
+        if (size <= 1) {
+            return size;
+        }
+        int bucket = size <= IN_LIST_BUCKET_STEP
+                ? Integer.highestOneBit(size - 1) << 1
+                : (size + IN_LIST_BUCKET_STEP - 1) / IN_LIST_BUCKET_STEP * IN_LIST_BUCKET_STEP;
+        return Math.min(bucket, Math.max(size, MAX_STATEMENT_PARAMETERS));
+    }
+
+    /**
+     * Retrieves the columns the privilege may read for a single row identified by its primary key.
+     * If that leaves columns out, the record is partly unset and not registered in the {@link RecordSession}.
      *
      * @param object The object instance containing the primary key value.
      * @return A LinkedHashMap containing the retrieved row, mapped from its primary key to the object representation.
@@ -36,9 +85,80 @@ public interface MySQLTableServiceTemplate extends DatabaseTableService {
      * @throws IOException                   If an I/O error occurs.
      */
     default LinkedHashMap<Object, DatabaseRecord> selectAll(int privilege, DatabaseRecord object) throws InitializationViolationException, JDBCReflectionGeneralException, SQLException, IOException {
-        String sql = "SELECT * FROM " + object.getTable() + " WHERE " + object.getPrimaryKeyColumnName() + " = ?;";
-        Object[] params = new Object[]{object.getPrimaryKeyValue()};
-        return executeQuery(object.getDatabase(), sql, params, rs -> getObjectDatabaseElementLinkedHashMap(privilege, rs, object));
+        Object primaryKey = object.getPrimaryKeyValue();
+        RecordCache cache = getRecordCache();
+        boolean detached = isDetached(privilege, object, null);
+        LinkedHashMap<Object, DatabaseRecord> cached = cache == null ? null : cache.get(object.getClass(), privilege, primaryKey);
+        if (cached != null) {
+            return detached ? cached : registerInSession(cached);
+        }
+
+        String sql = SqlTemplateCache.get(object.getClass(), "selectAll", privilege, List.of(), () -> new SqlTemplate(
+                selectFrom(object, List.of(), object.getMetadata().getView(privilege).getProjection())
+                        + " WHERE " + object.getPrimaryKeyColumnName() + " = ?;", List.of())).sql();
+        Object[] params = new Object[]{primaryKey};
+        // 조회 중에 무효화되면 결과를 캐시하지 않도록 조회 전에 세대를 받아둠
+        long generation = cache == null ? 0 : cache.generation(object.getClass(), primaryKey);
+        LinkedHashMap<Object, DatabaseRecord> result = executeQuery(object.getDatabase(), sql, params, rs -> getObjectDatabaseElementLinkedHashMap(privilege, rs, object, List.of(), detached));
+        if (cache != null) {
+            cache.put(object.getClass(), privilege, primaryKey, result, generation);
+        }
+        return result;
+    }
+
+    /**
+     * Replaces records served from a cache by the instances of the current session, if any.
+     */
+    private LinkedHashMap<Object, DatabaseRecord> registerInSession(LinkedHashMap<Object, DatabaseRecord> cached) {
+        RecordSession session = RecordSession.current();
+        if (session != null) {
+            cached.replaceAll((key, record) -> session.register(record));
+        }
+        return cached;
+    }
+
+    /**
+     * Drops written records from the record cache and marks the cached query results of their tables stale.
+     * Called after writes, whether they succeeded or not.
+     */
+    private void invalidateCached(Collection<? extends DatabaseRecord> objects) throws InitializationViolationException, JDBCReflectionGeneralException {
+        invalidateCached(objects, false);
+    }
+
+    /**
+     * Also evicts the written keys from the current {@link RecordSession}: always for deleted records, and
+     * otherwise when the session holds another instance than the written one, whose state is now stale.
+     *
+     * @param deleted Whether the records were deleted.
+     * @see #invalidateCached(Collection)
+     */
+    private void invalidateCached(Collection<? extends DatabaseRecord> objects, boolean deleted) throws InitializationViolationException, JDBCReflectionGeneralException {
+        RecordSession session = RecordSession.current();
+        if (session != null) {
+            for (DatabaseRecord object : objects) {
+                Object primaryKey = object.getPrimaryKeyValue();
+                if (deleted || session.get(object.getClass(), primaryKey) != object) {
+                    session.evict(object.getClass(), primaryKey);
+                }
+            }
+        }
+        RecordCache cache = getRecordCache();
+        if (cache != null) {
+            for (DatabaseRecord object : objects) {
+                if (cache.isCached(object.getClass())) {
+                    cache.invalidate(object.getClass(), object.getPrimaryKeyValue());
+                }
+            }
+        }
+        QueryResultCache queryCache = getQueryResultCache();
+        if (queryCache != null) {
+            HashSet<Class<?>> written = new HashSet<>();
+            for (DatabaseRecord object : objects) {
+                if (written.add(object.getClass())) {
+                    queryCache.invalidate(object.getClass());
+                }
+            }
+        }
     }
 
     /**
@@ -52,17 +172,68 @@ public interface MySQLTableServiceTemplate extends DatabaseTableService {
      * @throws JDBCReflectionGeneralException   If a reflection error occurs during object instantiation.
      */
     private LinkedHashMap<Object, DatabaseRecord> getObjectDatabaseElementLinkedHashMap(int privilege, ResultSet rs, DatabaseRecord object) throws SQLException, InitializationViolationException, JDBCReflectionGeneralException {
+        return getObjectDatabaseElementLinkedHashMap(privilege, rs, object, List.of());
+    }
+
+    /**
+     * Processes a ResultSet of a query joining the referenced tables, hydrating the parent and its
+     * referenced records from the same rows.
+     *
+     * @param joins The joins the query was built with.
+     * @see #getObjectDatabaseElementLinkedHashMap(int, ResultSet, DatabaseRecord)
+     */
+    private LinkedHashMap<Object, DatabaseRecord> getObjectDatabaseElementLinkedHashMap(int privilege, ResultSet rs, DatabaseRecord object, List<ForeignKeyJoin> joins) throws SQLException, InitializationViolationException, JDBCReflectionGeneralException {
+        return getObjectDatabaseElementLinkedHashMap(privilege, rs, object, joins, false);
+    }
+
+    /**
+     * @param detached Whether to leave the session out, for partly loaded records.
+     * @see #getObjectDatabaseElementLinkedHashMap(int, ResultSet, DatabaseRecord, List)
+     */
+    private LinkedHashMap<Object, DatabaseRecord> getObjectDatabaseElementLinkedHashMap(int privilege, ResultSet rs, DatabaseRecord object, List<ForeignKeyJoin> joins, boolean detached) throws SQLException, InitializationViolationException, JDBCReflectionGeneralException {
         LinkedHashMap<Object, DatabaseRecord> result = new LinkedHashMap<>();
         Class<?> objectClass = object.getClass();
+        RowDecoderPlan plan = RowDecoderPlan.of(object.getMetadata(), rs);
+        List<ColumnMetadata> foreignReferences = plan.getForeignReferences();
+        ArrayList<ForeignKeyJoin.Decoder> decoders = new ArrayList<>(joins.size());
+        if (!joins.isEmpty()) {
+            foreignReferences = new ArrayList<>(foreignReferences);
+            for (ForeignKeyJoin join : joins) {
+                decoders.add(join.decoder(rs));
+                foreignReferences.remove(join.getColumn());
+            }
+        }
+        RecordSession session = detached ? null : RecordSession.current();
+        ArrayList<DatabaseRecord> loaded = new ArrayList<>();
         while (rs.next()) {
             try {
-                DatabaseRecord newInstance = (DatabaseRecord) objectClass.getDeclaredConstructor().newInstance();
-                newInstance.objectifyCurrentRow(privilege, rs);
-                result.put(newInstance.getPrimaryKeyValue(), newInstance);
+                // 세션에 이미 있는 레코드는 다시 만들지 않음
+                DatabaseRecord existing = session == null || plan.getPrimaryKeyIndex() == 0 ? null : session.get(objectClass, rs.getObject(plan.getPrimaryKeyIndex()));
+                if (existing != null) {
+                    result.put(existing.getPrimaryKeyValue(), existing);
+                    continue;
+                }
+                DatabaseRecord newInstance = (DatabaseRecord) plan.getMetadata().newInstance();
+                newInstance.objectifyCurrentRow(privilege, rs, plan, false);
+                for (ForeignKeyJoin.Decoder decoder : decoders) {
+                    decoder.decode(rs, newInstance);
+                }
+                DatabaseRecord registered = session == null ? newInstance : session.register(newInstance);
+                if (registered == newInstance) {
+                    loaded.add(newInstance);
+                }
+                result.put(registered.getPrimaryKeyValue(), registered);
             } catch (NoSuchMethodException | InvocationTargetException | InstantiationException | IllegalAccessException e) {
                 throw new JDBCReflectionGeneralException("Expected a public, no-parameter constructor for class " + objectClass.getName(), e);
+            } catch (ReflectiveOperationException e) {
+                throw new JDBCReflectionGeneralException("Failed to assign a joined record to " + objectClass.getName(), e);
             }
         }
+        // 외래키 참조는 행마다가 아니라 결과 전체에 대해 한 번에 가져옴
+        ForeignKeyResolver.resolve(privilege, loaded, foreignReferences);
+        for (ForeignKeyJoin.Decoder decoder : decoders) {
+            ForeignKeyResolver.resolve(privilege, decoder.getDecoded(), decoder.getPlan().getForeignReferences());
+        }
         return result;
     }
 
@@ -84,6 +255,8 @@ public interface MySQLTableServiceTemplate extends DatabaseTableService {
             try (ResultSet rs = preparedStatement.executeQuery()) {
                 return resultSetProcessor.process(rs);
             }
+        } finally {
+            releaseConnection(database, connection);
         }
     }
 
@@ -101,6 +274,8 @@ public interface MySQLTableServiceTemplate extends DatabaseTableService {
         try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
             DatabaseRecord.setObjects(preparedStatement, params);
             return preparedStatement.executeUpdate();
+        } finally {
+            releaseConnection(database, connection);
         }
     }
 
@@ -119,32 +294,74 @@ public interface MySQLTableServiceTemplate extends DatabaseTableService {
      * @throws JDBCReflectionGeneralException   If a reflection error occurs.
      */
     default LinkedHashMap<Object, DatabaseRecord> selectBy(int privilege, DatabaseRecord blueprint, int offset, int limit, String[] columnNames, Object[] values) throws IOException, SQLException, InitializationViolationException, JDBCReflectionGeneralException {
-        StringBuilder sb = new StringBuilder("SELECT * FROM ");
-        sb.append(blueprint.getTable()).append(" WHERE ");
-        for (int i = 0; i < columnNames.length; i++) {
-            if (!blueprint.getColumnNames(privilege).contains(columnNames[i])) {
-                throw new IllegalArgumentException("Column " + columnNames[i] + " not found in table " + blueprint.getTable());
+        return selectBy(privilege, blueprint, offset, limit, columnNames, values, null);
+    }
+
+    /**
+     * Selects records based on specified columns and values with pagination.
+     *
+     * @param options The query options, null for the defaults.
+     * @see #selectBy(int, DatabaseRecord, int, int, String[], Object[])
+     */
+    default LinkedHashMap<Object, DatabaseRecord> selectBy(int privilege, DatabaseRecord blueprint, int offset, int limit, String[] columnNames, Object[] values, QueryOptions options) throws IOException, SQLException, InitializationViolationException, JDBCReflectionGeneralException {
+        List<ForeignKeyJoin> joins = joinsOf(privilege, blueprint, options);
+        String qualifier = joins.isEmpty() ? "" : ForeignKeyJoin.PARENT_ALIAS + ".";
+        List<QueryOptions.Order> order = orderOf(blueprint, options);
+        Object[] seek = options == null ? null : options.seekValues(blueprint.getMetadata());
+        boolean useOffset = offset > 0 && (options == null || !options.isKeyset());
+        List<String> projection = projectionOf(privilege, blueprint, options);
+        boolean detached = isDetached(privilege, blueprint, options);
+
+        // 같은 컬럼 조합이면 검증과 SQL 생성을 다시 하지 않음
+        List<Object> shape = new ArrayList<>(Arrays.asList(columnNames));
+        shape.add(limit > 0);
+        shape.add(useOffset);
+        shape.add(List.copyOf(order));
+        shape.add(seek != null);
+        shape.add(projection);
+        String sql = SqlTemplateCache.get(blueprint.getClass(), joins.isEmpty() ? "selectBy" : "selectBy+join", privilege, shape, () -> {
+            Set<String> readable = readableColumnNames(privilege, blueprint);
+            StringBuilder sb = new StringBuilder(selectFrom(blueprint, joins, projection));
+            if (columnNames.length > 0 || seek != null) {
+                sb.append(" WHERE ");
             }
+            for (int i = 0; i < columnNames.length; i++) {
+                if (!readable.contains(columnNames[i])) {
+                    throw new IllegalArgumentException("Column " + columnNames[i] + " not found in table " + blueprint.getTable());
+                }
 
-            sb.append(columnNames[i]).append(" = ?");
-            if (i < columnNames.length - 1) {
-                sb.append(" AND ");
+                sb.append(qualifier).append(columnNames[i]).append(" = ?");
+                if (i < columnNames.length - 1) {
+                    sb.append(" AND ");
+                }
             }
-        }
+            if (seek != null) {
+                if (columnNames.length > 0) {
+                    sb.append(" AND ");
+                }
+                appendSeek(sb, qualifier, order);
+            }
+            appendOrderBy(sb, qualifier, order, readable, blueprint.getTable());
 
-        if (limit > 0) sb.append(" LIMIT ?");
-        if (offset > 0) sb.append(" OFFSET ?");
-        sb.append(";");
+            if (limit > 0) sb.append(" LIMIT ?");
+            if (useOffset) sb.append(" OFFSET ?");
+            sb.append(";");
+            return new SqlTemplate(sb.toString(), List.of(columnNames));
+        }).sql();
 
-        // The 'values' array might need to be expanded to include limit and offset
-        Object[] queryParams = new Object[values.length + (limit > 0 ? 1 : 0) + (offset > 0 ? 1 : 0)];
+        // The 'values' array might need to be expanded to include the seek values, limit and offset
+        int seekLength = seek == null ? 0 : seek.length;
+        Object[] queryParams = new Object[values.length + seekLength + (limit > 0 ? 1 : 0) + (useOffset ? 1 : 0)];
         System.arraycopy(values, 0, queryParams, 0, values.length);
-        int currentIndex = values.length;
+        if (seek != null) {
+            System.arraycopy(seek, 0, queryParams, values.length, seekLength);
+        }
+        int currentIndex = values.length + seekLength;
         if (limit > 0) queryParams[currentIndex++] = limit;
-        if (offset > 0) queryParams[currentIndex] = offset;
+        if (useOffset) queryParams[currentIndex] = offset;
 
 
-        return executeQuery(blueprint.getDatabase(), sb.toString(), queryParams, rs -> getObjectDatabaseElementLinkedHashMap(privilege, rs, blueprint));
+        return executeQuery(blueprint.getDatabase(), sql, queryParams, rs -> getObjectDatabaseElementLinkedHashMap(privilege, rs, blueprint, joins, detached));
     }
 
     default LinkedHashMap<Object, DatabaseRecord> selectBy(DatabaseRecord blueprint, int offset, int limit, String[] columnNames, Object[] values) throws IOException, SQLException, InitializationViolationException, JDBCReflectionGeneralException {
@@ -152,64 +369,278 @@ public interface MySQLTableServiceTemplate extends DatabaseTableService {
     }
 
     default LinkedHashMap<Object, DatabaseRecord> searchBy(int privilege, DatabaseRecord blueprint, int offset, int limit, SearchExpression[] expressions) throws IOException, SQLException, InitializationViolationException, JDBCReflectionGeneralException {
-        StringBuilder sb = new StringBuilder("SELECT * FROM ");
-        sb.append(blueprint.getTable()).append(" WHERE ");
-        for (int i = 0; i < expressions.length; i++) {
+        return searchBy(privilege, blueprint, offset, limit, expressions, null);
+    }
+
+    /**
+     * @param options The query options, null for the defaults.
+     * @see #searchBy(int, DatabaseRecord, int, int, SearchExpression[])
+     */
+    default LinkedHashMap<Object, DatabaseRecord> searchBy(int privilege, DatabaseRecord blueprint, int offset, int limit, SearchExpression[] expressions, QueryOptions options) throws IOException, SQLException, InitializationViolationException, JDBCReflectionGeneralException {
+        List<ForeignKeyJoin> joins = joinsOf(privilege, blueprint, options);
+        List<String> projection = projectionOf(privilege, blueprint, options);
+        boolean detached = isDetached(privilege, blueprint, options);
+        QueryResultCache cache = getQueryResultCache();
+        if (cache == null) {
+            Map.Entry<String, Object[]> statement = searchStatement(privilege, blueprint, offset, limit, expressions, joins, options, projection);
+            return executeQuery(blueprint.getDatabase(), statement.getKey(), statement.getValue(), rs -> getObjectDatabaseElementLinkedHashMap(privilege, rs, blueprint, joins, detached));
+        }
+
+        List<Object> variant = options == null ? List.of() : Arrays.asList(List.copyOf(options.getOrderBy()), options.isKeyset(), options.getContinuationToken(), projection);
+        Object key = QueryResultCache.keyOf(blueprint.getClass(), privilege, offset, limit, !joins.isEmpty(), variant, expressions);
+        LinkedHashMap<Object, DatabaseRecord> cached = cache.get(key);
+        if (cached != null) {
+            return detached ? cached : registerInSession(cached);
+        }
+        // 쿼리 전에 테이블 세대를 잡아 두어야 동시에 일어난 쓰기를 놓치지 않음
+        QueryResultCache.Snapshot snapshot = cache.snapshot(blueprint.getClass());
+        // 캐시에 없을 때만 SQL 과 파라미터를 만듦
+        Map.Entry<String, Object[]> statement = searchStatement(privilege, blueprint, offset, limit, expressions, joins, options, projection);
+        LinkedHashMap<Object, DatabaseRecord> result = executeQuery(blueprint.getDatabase(), statement.getKey(), statement.getValue(), rs -> getObjectDatabaseElementLinkedHashMap(privilege, rs, blueprint, joins, detached));
+        cache.put(key, snapshot, result);
+        return result;
+    }
+
+    /**
+     * @return The foreign key joins requested by the options, empty if none.
+     */
+    private List<ForeignKeyJoin> joinsOf(int privilege, DatabaseRecord blueprint, QueryOptions options) {
+        if (options == null || !options.isJoinForeignKeys()) {
+            return List.of();
+        }
+        return ForeignKeyJoin.of(blueprint.getMetadata(), privilege);
+    }
+
+    /**
+     * @return The sort requested by the options, the keyset sort in keyset mode, empty if none.
+     */
+    private List<QueryOptions.Order> orderOf(DatabaseRecord blueprint, QueryOptions options) {
+        if (options == null) {
+            return List.of();
+        }
+        return options.isKeyset() ? options.keysetOrder(blueprint.getMetadata()) : options.getOrderBy();
+    }
+
+    /**
+     * Appends the keyset condition of a sort, e.g. {@code (created_at, id) > (?, ?)}.
+     */
+    private void appendSeek(StringBuilder sb, String qualifier, List<QueryOptions.Order> order) {
+        sb.append('(');
+        for (int i = 0; i < order.size(); i++) {
+            sb.append(i > 0 ? ", " : "").append(qualifier).append(order.get(i).column());
+        }
+        // 내림차순이면 마지막 행보다 작은 쪽이 다음 페이지
+        sb.append(order.getFirst().descending() ? ") < (" : ") > (");
+        for (int i = 0; i < order.size(); i++) {
+            sb.append(i > 0 ? ", ?" : "?");
+        }
+        sb.append(')');
+    }
 
-            if (!blueprint.getColumnNames(privilege).contains(expressions[i].getColumn())) {
-                throw new IllegalArgumentException("Column " + expressions[i].getColumn() + " not found in table " + blueprint.getTable());
+    private void appendOrderBy(StringBuilder sb, String qualifier, List<QueryOptions.Order> order, Set<String> readable, String table) {
+        for (int i = 0; i < order.size(); i++) {
+            QueryOptions.Order o = order.get(i);
+            if (!readable.contains(o.column())) {
+                throw new IllegalArgumentException("Column " + o.column() + " not found in table " + table);
+            }
+            sb.append(i == 0 ? " ORDER BY " : ", ").append(qualifier).append(o.column());
+            if (o.descending()) {
+                sb.append(" DESC");
             }
+        }
+    }
 
-            sb.append(expressions[i].getColumn());
+    /**
+     * @param projection The selected columns of the blueprint's table, null for all of them.
+     * @return The select list and FROM clause of a query on the blueprint's table, with the given joins if any.
+     */
+    private String selectFrom(DatabaseRecord blueprint, List<ForeignKeyJoin> joins, List<String> projection) throws InitializationViolationException {
+        return selectFrom(joins.isEmpty() ? null : blueprint.getDatabase(), blueprint.getTable(), joins, projection);
+    }
 
-            // IN 절 처리
-            if (expressions[i].getIn().length > 0) {
-                sb.append(expressions[i].isNegate() ? " NOT IN (" : " IN (");
-                for (int j = 0; j < expressions[i].getIn().length; j++) {
-                    sb.append("?");
-                    if (j < expressions[i].getIn().length - 1) {
-                        sb.append(", ");
-                    }
+    /**
+     * @param database The database of the table, only used with joins.
+     * @see #selectFrom(DatabaseRecord, List, List)
+     */
+    private String selectFrom(String database, String table, List<ForeignKeyJoin> joins, List<String> projection) {
+        StringBuilder sb = new StringBuilder("SELECT ");
+        if (joins.isEmpty()) {
+            sb.append(projection == null ? "*" : String.join(", ", projection)).append(" FROM ").append(table);
+        } else {
+            ForeignKeyJoin.appendFrom(sb, database, table, joins, projection);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return Whether the records of a query are partly loaded, because the privilege or the options narrow
+     * its projection, so they must not be registered in the {@link RecordSession} where they could stand in
+     * for fully loaded records.
+     */
+    private boolean isDetached(int privilege, DatabaseRecord blueprint, QueryOptions options) {
+        return (options != null && options.isProjected()) || blueprint.getMetadata().getView(privilege).isNarrowed();
+    }
+
+    /**
+     * @return The columns a query selects: those the privilege may read, narrowed by the options if they
+     * ask for it, or null to select every column.
+     */
+    private List<String> projectionOf(int privilege, DatabaseRecord blueprint, QueryOptions options) {
+        RecordMetadata metadata = blueprint.getMetadata();
+        PrivilegeView view = metadata.getView(privilege);
+        if (options == null || !options.isProjected()) {
+            return view.getProjection();
+        }
+
+        Set<String> requested = options.getColumns() == null ? null : new HashSet<>(options.getColumns());
+        if (requested != null) {
+            for (String column : requested) {
+                if (!view.getReadableColumnNames().contains(column)) {
+                    throw new IllegalArgumentException("Column " + column + " not found in table " + metadata.getTable());
                 }
-                sb.append(")");
+            }
+        }
+        // 기본키와 keyset 정렬 컬럼은 다음 페이지 토큰에 필요하므로 항상 선택
+        HashSet<String> required = new HashSet<>();
+        if (metadata.getPrimaryKeyColumnName() != null) {
+            required.add(metadata.getPrimaryKeyColumnName());
+        }
+        if (options.isKeyset()) {
+            for (QueryOptions.Order order : options.keysetOrder(metadata)) {
+                required.add(order.column());
+            }
+        }
 
-            // IN 이 아닌 경우 처리
-            // ex: =, !=, LIKE 등
-            } else {
+        ArrayList<String> projection = new ArrayList<>();
+        for (ColumnMetadata column : view.getReadableColumns()) {
+            boolean selected = required.contains(column.getColumnName())
+                    || ((requested == null || requested.contains(column.getColumnName()))
+                    && (options.getColumnFilter() == null || options.getColumnFilter().test(column)));
+            if (!selected) {
+                continue;
+            }
+            if (column.isComposition()) {
+                // 컴포지션 컬럼 이름은 객체만 알고 있으므로 전체 선택
+                return null;
+            }
+            projection.add(column.getColumnName());
+        }
+        if (metadata.getPrimaryKeyColumnName() != null && !projection.contains(metadata.getPrimaryKeyColumnName())) {
+            projection.addFirst(metadata.getPrimaryKeyColumnName());
+        }
+        return List.copyOf(projection);
+    }
+
+    /**
+     * @return The database columns the privilege may read, for validating filter columns.
+     */
+    private Set<String> readableColumnNames(int privilege, DatabaseRecord blueprint) {
+        PrivilegeView view = blueprint.getMetadata().getView(privilege);
+        return view.isComplete() ? view.getReadableColumnNames() : new HashSet<>(blueprint.getColumnNames(privilege));
+    }
+
+    /**
+     * Builds the SELECT of {@link #searchBy(int, DatabaseRecord, int, int, SearchExpression[])}.
+     *
+     * @return The SQL and its parameters.
+     */
+    private Map.Entry<String, Object[]> searchStatement(int privilege, DatabaseRecord blueprint, int offset, int limit, SearchExpression[] expressions, List<ForeignKeyJoin> joins, QueryOptions options, List<String> projection) throws SQLException, InitializationViolationException {
+        String qualifier = joins.isEmpty() ? "" : ForeignKeyJoin.PARENT_ALIAS + ".";
+        List<QueryOptions.Order> order = orderOf(blueprint, options);
+        Object[] seek = options == null ? null : options.seekValues(blueprint.getMetadata());
+        boolean useOffset = offset > 0 && (options == null || !options.isKeyset());
+        int[] inSizes = inListSizes(expressions, (seek == null ? 0 : seek.length) + (limit > 0 ? 1 : 0) + (useOffset ? 1 : 0));
+        // SQL 은 식의 구조(컬럼, 연산자, IN 개수, AND/OR)에만 의존
+        ArrayList<Object> shape = new ArrayList<>();
+        for (int i = 0; i < expressions.length; i++) {
+            SearchExpression exp = expressions[i];
+            Collections.addAll(shape, exp.getColumn(), exp.isNegate(), exp.isStartsWith(), exp.isEndsWith(),
+                    inSizes[i], exp.isAnd(), exp.isOr());
+        }
+        shape.add(limit > 0);
+        shape.add(useOffset);
+        shape.add(List.copyOf(order));
+        shape.add(seek != null);
+        shape.add(projection);
+        String table = blueprint.getTable();
+        // 템플릿 빌더는 SQLException 만 던지도록 DB 이름은 밖에서 읽음
+        String database = joins.isEmpty() ? null : blueprint.getDatabase();
+        String sql = SqlTemplateCache.get(blueprint.getClass(), joins.isEmpty() ? "searchBy" : "searchBy+join", privilege, shape, () -> {
+            Set<String> readable = readableColumnNames(privilege, blueprint);
+            StringBuilder sb = new StringBuilder(selectFrom(database, table, joins, projection));
+            if (expressions.length > 0 || seek != null) {
+                sb.append(" WHERE ");
+            }
+            // OR 로 이어진 식도 keyset 조건과는 AND 로 묶이도록 괄호로 감쌈
+            if (expressions.length > 0 && seek != null) {
+                sb.append('(');
+            }
+            for (int i = 0; i < expressions.length; i++) {
 
-                if (expressions[i].isStartsWith() || expressions[i].isEndsWith()) {
-                    sb.append(" LIKE ");
+                if (!readable.contains(expressions[i].getColumn())) {
+                    throw new IllegalArgumentException("Column " + expressions[i].getColumn() + " not found in table " + table);
+                }
+
+                sb.append(qualifier).append(expressions[i].getColumn());
+
+                // IN 절 처리
+                if (expressions[i].getIn().length > 0) {
+                    sb.append(expressions[i].isNegate() ? " NOT IN (" : " IN (");
+                    int placeholders = inSizes[i];
+                    for (int j = 0; j < placeholders; j++) {
+                        sb.append("?");
+                        if (j < placeholders - 1) {
+                            sb.append(", ");
+                        }
+                    }
+                    sb.append(")");
+
+                // IN 이 아닌 경우 처리
+                // ex: =, !=, LIKE 등
                 } else {
-                    if (expressions[i].isNegate()) {
-                        sb.append(" != ");
+
+                    if (expressions[i].isStartsWith() || expressions[i].isEndsWith()) {
+                        sb.append(" LIKE ");
                     } else {
-                        sb.append(" = ");
+                        if (expressions[i].isNegate()) {
+                            sb.append(" != ");
+                        } else {
+                            sb.append(" = ");
+                        }
                     }
-                }
 
-                if (expressions[i].isEndsWith()) {
-                    sb.append("%");
+                    if (expressions[i].isEndsWith()) {
+                        sb.append("%");
+                    }
+                    sb.append("?");
+                    if (expressions[i].isStartsWith()) {
+                        sb.append("%");
+                    }
                 }
-                sb.append("?");
-                if (expressions[i].isStartsWith()) {
-                    sb.append("%");
+
+                if (i < expressions.length - 1) {
+                    if (expressions[i + 1].isAnd()) {
+                        sb.append(" AND ");
+                    } else if (expressions[i + 1].isOr()) {
+                        sb.append(" OR ");
+                    } else {
+                        throw new SQLException("Chained SearchExpression must have any of AND or OR set to true using .or() or .and() function.");
+                    }
                 }
             }
-
-            if (i < expressions.length - 1) {
-                if (expressions[i + 1].isAnd()) {
-                    sb.append(" AND ");
-                } else if (expressions[i + 1].isOr()) {
-                    sb.append(" OR ");
-                } else {
-                    throw new SQLException("Chained SearchExpression must have any of AND or OR set to true using .or() or .and() function.");
+            if (seek != null) {
+                if (expressions.length > 0) {
+                    sb.append(") AND ");
                 }
+                appendSeek(sb, qualifier, order);
             }
-        }
+            appendOrderBy(sb, qualifier, order, readable, table);
 
-        if (limit > 0) sb.append(" LIMIT ?");
-        if (offset > 0) sb.append(" OFFSET ?");
-        sb.append(";");
+            if (limit > 0) sb.append(" LIMIT ?");
+            if (useOffset) sb.append(" OFFSET ?");
+            sb.append(";");
+            return new SqlTemplate(sb.toString(), List.of());
+        }).sql();
 
 //        // The 'values' array might need to be expanded to include limit and offset
 //        Object[] queryParams = new Object[expressions.length + (limit > 0 ? 1 : 0) + (offset > 0 ? 1 : 0)];
@@ -221,10 +652,16 @@ public interface MySQLTableServiceTemplate extends DatabaseTableService {
 //        if (offset > 0) queryParams[currentIndex] = offset;
         ArrayList<Object> paramList = new ArrayList<>();
 
-        for (SearchExpression exp : expressions) {
+        for (int i = 0; i < expressions.length; i++) {
+            SearchExpression exp = expressions[i];
             // If it is an IN clause, add each element individually
             if (exp.getIn() != null && exp.getIn().length > 0) {
                 Collections.addAll(paramList, exp.getIn());
+                // 버킷 크기까지 마지막 값을 반복 (IN 의 결과는 같음)
+                Object last = exp.getIn()[exp.getIn().length - 1];
+                for (int j = exp.getIn().length; j < inSizes[i]; j++) {
+                    paramList.add(last);
+                }
             }
             // Otherwise, add the single value
             else {
@@ -232,14 +669,41 @@ public interface MySQLTableServiceTemplate extends DatabaseTableService {
             }
         }
 
+        if (seek != null) {
+            Collections.addAll(paramList, seek);
+        }
+
         // Add Limit and Offset if they exist
         if (limit > 0) paramList.add(limit);
-        if (offset > 0) paramList.add(offset);
+        if (useOffset) paramList.add(offset);
 
         // Convert back to Object[] for executeQuery
         Object[] queryParams = paramList.toArray();
 
-        return executeQuery(blueprint.getDatabase(), sb.toString(), queryParams, rs -> getObjectDatabaseElementLinkedHashMap(privilege, rs, blueprint));
+        return Map.entry(sql, queryParams);
+    }
+
+    /**
+     * @param otherParameters The number of parameters of the statement besides the expressions.
+     * @return The number of placeholders of each expression's IN list, 0 if it has none: the sizes bucketed
+     * by {@link #inListSize(int)}, or the exact sizes if the padding would exceed {@link #MAX_STATEMENT_PARAMETERS}.
+     */
+    private int[] inListSizes(SearchExpression[] expressions, int otherParameters) {
+        int[] sizes = new int[expressions.length];
+        long padded = otherParameters;
+        for (int i = 0; i < expressions.length; i++) {
+            int size = expressions[i].getIn() == null ? 0 : expressions[i].getIn().length;
+            sizes[i] = inListSize(size);
+            // IN 이 아닌 식은 값 하나
+            padded += size == 0 ? 1 : sizes[i];
+        }
+        if (padded > MAX_STATEMENT_PARAMETERS) {
+            // 채우면 한도를 넘으므로 채우지 않음
+            for (int i = 0; i < expressions.length; i++) {
+                sizes[i] = expressions[i].getIn() == null ? 0 : expressions[i].getIn().length;
+            }
+        }
+        return sizes;
     }
 
     default LinkedHashMap<Object, DatabaseRecord> searchBy(DatabaseRecord blueprint, int offset, int limit, SearchExpression[] expressions) throws IOException, SQLException, InitializationViolationException, JDBCReflectionGeneralException {
@@ -247,19 +711,164 @@ public interface MySQLTableServiceTemplate extends DatabaseTableService {
     }
 
     /**
-     * Updates an existing record in the database.
+     * Opens a cursor over the result of a query, hydrating one record per row instead of loading the
+     * whole result. The statement is forward-only and read-only; {@code fetchSize} is passed to the driver
+     * as a hint of how many rows to buffer. Use {@link #STREAMING_FETCH_SIZE} for MySQL Connector/J row
+     * streaming, or a positive size with {@code useCursorFetch=true} (MariaDB streams with any positive size).
+     * Referenced records are not fetched; see {@link RecordCursor}.
+     *
+     * @param privilege The privilege the records are read with.
+     * @param blueprint An object instance defining the record class and database.
+     * @param sql       The SQL query.
+     * @param params    The query parameters.
+     * @param fetchSize The fetch size hint, 0 for the driver default.
+     * @param <T>       The record class.
+     * @return The open cursor; the caller must close it.
+     * @throws SQLException                  If a database access error occurs.
+     * @throws InitializationViolationException If the blueprint is not properly initialized.
+     */
+    default <T extends DatabaseRecord> RecordCursor<T> openCursor(int privilege, T blueprint, String sql, Object[] params, int fetchSize) throws SQLException, InitializationViolationException {
+        String database = blueprint.getDatabase();
+        Connection connection = getConnection(database);
+        PreparedStatement preparedStatement = null;
+        try {
+            preparedStatement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            preparedStatement.setFetchSize(fetchSize);
+            DatabaseRecord.setObjects(preparedStatement, params);
+            ResultSet rs = preparedStatement.executeQuery();
+            // The connection stays borrowed until the cursor is closed
+            return new RecordCursor<>(privilege, preparedStatement, rs, RowDecoderPlan.of(blueprint.getMetadata(), rs),
+                    () -> releaseConnection(database, connection));
+        } catch (SQLException | RuntimeException e) {
+            try {
+                if (preparedStatement != null) {
+                    preparedStatement.close();
+                }
+            } finally {
+                releaseConnection(database, connection);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Cursor variant of {@link #searchBy(int, DatabaseRecord, int, int, SearchExpression[])}.
+     *
+     * @return The open cursor; the caller must close it.
+     */
+    default <T extends DatabaseRecord> RecordCursor<T> searchCursor(int privilege, T blueprint, int offset, int limit, SearchExpression[] expressions, int fetchSize) throws SQLException, InitializationViolationException {
+        Map.Entry<String, Object[]> statement = searchStatement(privilege, blueprint, offset, limit, expressions, List.of(), null, blueprint.getMetadata().getView(privilege).getProjection());
+        return openCursor(privilege, blueprint, statement.getKey(), statement.getValue(), fetchSize);
+    }
+
+    /**
+     * Stream variant of {@link #searchBy(int, DatabaseRecord, int, int, SearchExpression[])}.
+     * The stream holds an open result set and must be closed, e.g. with try-with-resources.
+     */
+    default <T extends DatabaseRecord> Stream<T> searchStream(int privilege, T blueprint, int offset, int limit, SearchExpression[] expressions, int fetchSize) throws SQLException, InitializationViolationException {
+        return searchCursor(privilege, blueprint, offset, limit, expressions, fetchSize).stream();
+    }
+
+    /**
+     * Publisher variant of {@link #searchBy(int, DatabaseRecord, int, int, SearchExpression[])}: each
+     * subscriber opens its own cursor on its first request and reads rows only as it requests them, so a
+     * slow subscriber throttles the read. Use {@link #STREAMING_FETCH_SIZE} (or a positive size with cursor
+     * fetch) for the driver not to buffer the whole result either.
+     */
+    default <T extends DatabaseRecord> RecordPublisher<T> searchPublisher(int privilege, T blueprint, int offset, int limit, SearchExpression[] expressions, int fetchSize) {
+        return new RecordPublisher<>(() -> searchCursor(privilege, blueprint, offset, limit, expressions, fetchSize));
+    }
+
+    /**
+     * Updates an existing record in the database. A record read from or written to the database earlier
+     * only sends the columns changed since, and none at all (no round trip) if nothing changed.
      *
      * @param object The object containing the updated data and primary key.
-     * @return The number of rows affected.
+     * @return The number of rows affected, 0 if there was nothing to write.
      * @throws InitializationViolationException If the object is not properly initialized.
      * @throws JDBCReflectionGeneralException   If a reflection error occurs.
      * @throws SQLException                  If a database access error occurs.
      * @throws IOException                   If an I/O error occurs.
      */
     default int update(int privilege, DatabaseRecord object) throws InitializationViolationException, JDBCReflectionGeneralException, SQLException, IOException {
-        StringBuilder sb = new StringBuilder();
-        sb.append("UPDATE ").append(object.getTable()).append(" SET ");
+        Map.Entry<SqlTemplate, Object[]> statement = updateStatement(privilege, object);
+        if (statement == null) {
+            // 바뀐 컬럼이 없으면 왕복하지 않음
+            return 0;
+        }
+        try {
+            int affected = executeUpdate(object.getDatabase(), statement.getKey().sql(), statement.getValue());
+            snapshotWritten(object, statement.getKey());
+            return affected;
+        } finally {
+            invalidateCached(List.of(object));
+        }
+    }
+
+    default int[] updateAll(int privilege, Collection<? extends DatabaseRecord> objects) throws InitializationViolationException, JDBCReflectionGeneralException, SQLException, IOException {
+        return updateAll(privilege, objects, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Updates many records with batched statements.
+     * <p>
+     * Each record gets the same UPDATE as {@link #update(int, DatabaseRecord)}, so field write privileges
+     * and {@code @PseudoEnum} validation apply unchanged. Records producing the same SQL (same class and
+     * writable columns) share one prepared statement and are sent with {@code executeBatch}.
+     *
+     * @param privilege The privilege of the caller, used for field write checks.
+     * @param objects   The records to update.
+     * @param chunkSize The maximum number of records per batch.
+     * @return The number of rows affected by each batch, in execution order.
+     * @throws InitializationViolationException If a record is not properly initialized.
+     * @throws JDBCReflectionGeneralException   If a reflection error occurs.
+     * @throws SQLException                  If a database access error occurs.
+     * @throws IOException                   If an I/O error occurs.
+     */
+    default int[] updateAll(int privilege, Collection<? extends DatabaseRecord> objects, int chunkSize) throws InitializationViolationException, JDBCReflectionGeneralException, SQLException, IOException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+
+        // 같은 SQL 끼리 묶어서 배치 실행
+        LinkedHashMap<String, ArrayList<Object[]>> groups = new LinkedHashMap<>();
+        LinkedHashMap<String, String> databases = new LinkedHashMap<>();
+        ArrayList<DatabaseRecord> changed = new ArrayList<>();
+        ArrayList<SqlTemplate> written = new ArrayList<>();
+        for (DatabaseRecord object : objects) {
+            Map.Entry<SqlTemplate, Object[]> statement = updateStatement(privilege, object);
+            if (statement == null) {
+                continue;
+            }
+            String sql = statement.getKey().sql();
+            changed.add(object);
+            written.add(statement.getKey());
+            groups.computeIfAbsent(sql, k -> new ArrayList<>()).add(statement.getValue());
+            databases.putIfAbsent(sql, object.getDatabase());
+        }
 
+        ArrayList<Integer> counts = new ArrayList<>();
+        try {
+            for (Map.Entry<String, ArrayList<Object[]>> group : groups.entrySet()) {
+                executeBatches(databases.get(group.getKey()), group.getKey(), group.getValue(), chunkSize, counts);
+            }
+            for (int i = 0; i < changed.size(); i++) {
+                snapshotWritten(changed.get(i), written.get(i));
+            }
+        } finally {
+            invalidateCached(changed);
+        }
+        return counts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Builds the UPDATE of a record: every column the privilege may write, keyed by the primary key.
+     * Columns of a tracked record that did not change since it was read or written are left out. Only the
+     * statement writing every column is cached: the subsets of changed columns are too many to keep.
+     *
+     * @return The statement and its parameters, or null if a tracked record has no changed column to write.
+     */
+    private Map.Entry<SqlTemplate, Object[]> updateStatement(int privilege, DatabaseRecord object) throws InitializationViolationException, JDBCReflectionGeneralException {
         LinkedHashMap<String, Object> values;
         try {
             values = object.getValues(Integer.MAX_VALUE);
@@ -267,42 +876,73 @@ public interface MySQLTableServiceTemplate extends DatabaseTableService {
             throw new JDBCReflectionGeneralException(e);
         }
 
-//        Object[] params = new Object[values.size() + 1];
-        ArrayList<Object> params = new ArrayList<>();
-        int i = 0;
-        for (String key : values.keySet()) {
-            try {
+        RecordMetadata metadata = object.getMetadata();
+        boolean narrowed = object.isTracked() && values.keySet().removeIf(key -> {
+            ColumnMetadata column = metadata.getColumn(key);
+            return column != null && !object.isDirty(column);
+        });
+        if (values.isEmpty()) {
+            return null;
+        }
+        String table = object.getTable();
+        String primaryKeyColumnName = object.getPrimaryKeyColumnName();
+        TemplateBuilder<RuntimeException> builder = () -> {
+            StringBuilder sb = new StringBuilder();
+            sb.append("UPDATE ").append(table).append(" SET ");
+
+            PrivilegeView view = metadata.getView(privilege);
+            ArrayList<String> columns = new ArrayList<>();
+            for (String key : values.keySet()) {
+                ColumnMetadata column = metadata.getColumn(key);
                 // 권한 체크
-                Field annotationChk = object.getClass().getDeclaredField(key);
-                if (object.mayAccessByFieldSecurityPolicy(privilege, true, annotationChk)) {
+                if (column != null && !view.mayWrite(column)) {
                     continue;
                 }
+                if (!columns.isEmpty()) sb.append(", ");
+                sb.append(key).append(" = ?");
+                columns.add(key);
+            }
+
+            sb.append(" WHERE ").append(primaryKeyColumnName).append(" = ?;");
+            return new SqlTemplate(sb.toString(), List.copyOf(columns));
+        };
+        // 바뀐 컬럼 조합은 최대 2^n 가지라 전역 템플릿 캐시를 채우지 않도록 매번 만듦
+        SqlTemplate template = narrowed ? builder.build()
+                : SqlTemplateCache.get(object.getClass(), "update", privilege, List.copyOf(values.keySet()), builder);
+        if (template.columns().isEmpty()) {
+            // 쓸 수 있는 컬럼이 없음
+            return null;
+        }
 
+        Object[] params = new Object[template.columns().size() + 1];
+        int i = 0;
+        for (String key : template.columns()) {
+            ColumnMetadata column = metadata.getColumn(key);
+            if (column != null) {
                 // PseudoEnum 체크
-                if (object.getClass().getDeclaredField(key).isAnnotationPresent(PseudoEnum.class)) {
-                    PseudoEnum enumValue = object.getClass().getDeclaredField(key).getAnnotation(PseudoEnum.class);
-                    if (!Arrays.asList(enumValue.accepts()).contains((String) values.get(key))) {
-                        throw new RuntimeException("Pseudo enum does not accept value: " + values.get(key));
-                    }
-                    if (!enumValue.nullable() && values.get(key) == null) {
-                        throw new RuntimeException("Pseudo enum does not allow null but got null for: " + key);
-                    }
-                }
-            } catch (NoSuchFieldException | SecurityException e) {
-                e.printStackTrace();
+                column.validatePseudoEnum(values.get(key));
             }
-            if (i > 0) sb.append(", ");
-            sb.append(key).append(" = ?");
-//            params[i++] = values.get(key);
-            params.add(values.get(key));
-            i++;
+            params[i++] = values.get(key);
         }
+        params[i] = object.getPrimaryKeyValue();
 
-        sb.append(" WHERE ").append(object.getPrimaryKeyColumnName()).append(" = ?;");
-//        params[i] = object.getPrimaryKeyValue();
-        params.add(object.getPrimaryKeyValue());
+        return Map.entry(template, params);
+    }
 
-        return executeUpdate(object.getDatabase(), sb.toString(), params.toArray());
+    /**
+     * Marks the columns an update wrote as stored. Columns it left out, e.g. because the privilege may not
+     * write them, keep their stored state and stay dirty.
+     */
+    private void snapshotWritten(DatabaseRecord object, SqlTemplate template) {
+        RecordMetadata metadata = object.getMetadata();
+        ArrayList<ColumnMetadata> written = new ArrayList<>(template.columns().size());
+        for (String key : template.columns()) {
+            ColumnMetadata column = metadata.getColumn(key);
+            if (column != null) {
+                written.add(column);
+            }
+        }
+        object.snapshotColumns(written);
     }
 
     /**
@@ -316,9 +956,217 @@ public interface MySQLTableServiceTemplate extends DatabaseTableService {
      * @throws IOException                   If an I/O error occurs.
      */
     default int insert(DatabaseRecord object) throws InitializationViolationException, JDBCReflectionGeneralException, SQLException, IOException {
-        StringBuilder columnNames = new StringBuilder();
-        StringBuilder valuePlaceholders = new StringBuilder();
+        LinkedHashMap<String, Object> values = insertableValues(object);
+        String table = object.getTable();
+        List<String> columns = List.copyOf(values.keySet());
+        String sql = SqlTemplateCache.get(object.getClass(), "insert", 0, columns, () -> new SqlTemplate(insertSql(table, columns, 1), columns)).sql();
+
+        // 없는 키로 캐시된 항목도 지움
+        try {
+            int affected = executeUpdate(object.getDatabase(), sql, values.values().toArray());
+            object.snapshotState();
+            return affected;
+        } finally {
+            invalidateCached(List.of(object));
+        }
+    }
+
+    default int[] insertAll(Collection<? extends DatabaseRecord> objects) throws InitializationViolationException, JDBCReflectionGeneralException, SQLException, IOException {
+        return insertAll(objects, DEFAULT_BATCH_SIZE, false);
+    }
+
+    /**
+     * Inserts many records, reusing prepared statements instead of one round trip per record.
+     * <p>
+     * Records are grouped by class. In batch mode each group reuses a single {@code INSERT} statement
+     * with {@code addBatch}/{@code executeBatch}, one batch per chunk. In multi-row mode each chunk is sent
+     * as one {@code INSERT ... VALUES (...), (...)} statement; chunks are shrunk if needed so a statement
+     * never exceeds {@link #MAX_STATEMENT_PARAMETERS} parameters.
+     * {@code @Automatic} columns are skipped and {@code @PseudoEnum} values are validated like {@link #insert(DatabaseRecord)}.
+     *
+     * @param objects        The records to insert.
+     * @param chunkSize      The maximum number of records per batch or statement.
+     * @param multiRowValues Whether to send each chunk as a single multi-row VALUES statement.
+     * @return The number of rows affected by each chunk, in execution order.
+     * @throws InitializationViolationException If a record is not properly initialized.
+     * @throws JDBCReflectionGeneralException   If a reflection error occurs.
+     * @throws SQLException                  If a database access error occurs.
+     * @throws IOException                   If an I/O error occurs.
+     */
+    default int[] insertAll(Collection<? extends DatabaseRecord> objects, int chunkSize, boolean multiRowValues) throws InitializationViolationException, JDBCReflectionGeneralException, SQLException, IOException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
 
+        // 클래스별로 묶어서 같은 SQL 을 재사용
+        LinkedHashMap<Class<?>, ArrayList<DatabaseRecord>> groups = new LinkedHashMap<>();
+        for (DatabaseRecord object : objects) {
+            groups.computeIfAbsent(object.getClass(), k -> new ArrayList<>()).add(object);
+        }
+
+        ArrayList<Integer> counts = new ArrayList<>();
+        try {
+            insertGroups(groups.values(), chunkSize, multiRowValues, counts);
+            for (DatabaseRecord object : objects) {
+                object.snapshotState();
+            }
+        } finally {
+            invalidateCached(objects);
+        }
+        return counts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Runs the statements of {@link #insertAll(Collection, int, boolean)} for records grouped by class.
+     */
+    private void insertGroups(Collection<ArrayList<DatabaseRecord>> groups, int chunkSize, boolean multiRowValues, List<Integer> counts) throws InitializationViolationException, JDBCReflectionGeneralException, SQLException {
+        for (ArrayList<DatabaseRecord> group : groups) {
+            DatabaseRecord first = group.getFirst();
+            ArrayList<Object[]> rows = new ArrayList<>(group.size());
+            List<String> columns = insertableRows(group, rows);
+
+            if (multiRowValues) {
+                Connection connection = getConnection(first.getDatabase());
+                int rowsPerStatement = Math.min(chunkSize, Math.max(1, MAX_STATEMENT_PARAMETERS / Math.max(1, columns.size())));
+                PreparedStatement preparedStatement = null;
+                int preparedRows = 0;
+                try {
+                    for (int start = 0; start < rows.size(); start += rowsPerStatement) {
+                        int chunkRows = Math.min(rowsPerStatement, rows.size() - start);
+                        // 마지막 청크만 크기가 다를 수 있으므로 그때만 다시 준비
+                        if (preparedStatement == null || preparedRows != chunkRows) {
+                            if (preparedStatement != null) {
+                                preparedStatement.close();
+                            }
+                            preparedStatement = connection.prepareStatement(insertSql(first.getTable(), columns, chunkRows));
+                            preparedRows = chunkRows;
+                        }
+                        int parameterIndex = 1;
+                        for (int r = start; r < start + chunkRows; r++) {
+                            for (Object value : rows.get(r)) {
+                                DatabaseRecord.setObject(preparedStatement, parameterIndex++, value);
+                            }
+                        }
+                        counts.add(preparedStatement.executeUpdate());
+                    }
+                } finally {
+                    try {
+                        if (preparedStatement != null) {
+                            preparedStatement.close();
+                        }
+                    } finally {
+                        releaseConnection(first.getDatabase(), connection);
+                    }
+                }
+            } else {
+                executeBatches(first.getDatabase(), insertSql(first.getTable(), columns, 1), rows, chunkSize, counts);
+            }
+        }
+    }
+
+    /**
+     * Inserts a record, or updates every non-key column of the existing row with the same key.
+     *
+     * @param object The object to insert or update.
+     * @return The number of rows affected, as reported by the database (MySQL: 1 inserted, 2 updated, 0 unchanged).
+     * @throws InitializationViolationException If the object is not properly initialized.
+     * @throws JDBCReflectionGeneralException   If a reflection error occurs.
+     * @throws SQLException                  If a database access error occurs.
+     * @throws IOException                   If an I/O error occurs.
+     */
+    default int upsert(DatabaseRecord object) throws InitializationViolationException, JDBCReflectionGeneralException, SQLException, IOException {
+        LinkedHashMap<String, Object> values = insertableValues(object);
+        String table = object.getTable();
+        String primaryKeyColumnName = object.getPrimaryKeyColumnName();
+        List<String> columns = List.copyOf(values.keySet());
+        String sql = SqlTemplateCache.get(object.getClass(), "upsert", 0, columns, () -> new SqlTemplate(upsertSql(table, columns, primaryKeyColumnName), columns)).sql();
+        try {
+            int affected = executeUpdate(object.getDatabase(), sql, values.values().toArray());
+            object.snapshotState();
+            return affected;
+        } finally {
+            invalidateCached(List.of(object));
+        }
+    }
+
+    default int[] upsertAll(Collection<? extends DatabaseRecord> objects) throws InitializationViolationException, JDBCReflectionGeneralException, SQLException, IOException {
+        return upsertAll(objects, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Batched {@link #upsert(DatabaseRecord)}: records are grouped by class and each group reuses one
+     * prepared statement, flushed every {@code chunkSize} records.
+     *
+     * @param objects   The records to insert or update.
+     * @param chunkSize The maximum number of records per batch.
+     * @return The number of rows affected by each batch, in execution order.
+     * @throws InitializationViolationException If a record is not properly initialized.
+     * @throws JDBCReflectionGeneralException   If a reflection error occurs.
+     * @throws SQLException                  If a database access error occurs.
+     * @throws IOException                   If an I/O error occurs.
+     */
+    default int[] upsertAll(Collection<? extends DatabaseRecord> objects, int chunkSize) throws InitializationViolationException, JDBCReflectionGeneralException, SQLException, IOException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+
+        LinkedHashMap<Class<?>, ArrayList<DatabaseRecord>> groups = new LinkedHashMap<>();
+        for (DatabaseRecord object : objects) {
+            groups.computeIfAbsent(object.getClass(), k -> new ArrayList<>()).add(object);
+        }
+
+        ArrayList<Integer> counts = new ArrayList<>();
+        try {
+            for (ArrayList<DatabaseRecord> group : groups.values()) {
+                DatabaseRecord first = group.getFirst();
+                ArrayList<Object[]> rows = new ArrayList<>(group.size());
+                List<String> columns = insertableRows(group, rows);
+                executeBatches(first.getDatabase(), upsertSql(first.getTable(), columns, first.getPrimaryKeyColumnName()), rows, chunkSize, counts);
+            }
+            for (DatabaseRecord object : objects) {
+                object.snapshotState();
+            }
+        } finally {
+            invalidateCached(objects);
+        }
+        return counts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Dialect hook for {@link #upsert(DatabaseRecord)}: builds a single-row upsert whose parameters are the
+     * given columns in order. The default is MySQL / MariaDB {@code INSERT ... ON DUPLICATE KEY UPDATE};
+     * override for other databases (e.g. {@code ON CONFLICT (pk) DO UPDATE SET c = EXCLUDED.c}).
+     *
+     * @param table            The table name.
+     * @param columns          The inserted columns.
+     * @param primaryKeyColumn The primary key column, not updated on conflict.
+     * @return The SQL statement.
+     */
+    default String upsertSql(String table, List<String> columns, String primaryKeyColumn) {
+        StringBuilder sb = new StringBuilder(insertSql(table, columns, 1));
+        sb.setLength(sb.length() - 1);
+        sb.append(" ON DUPLICATE KEY UPDATE ");
+        int i = 0;
+        for (String column : columns) {
+            if (column.equals(primaryKeyColumn)) {
+                continue;
+            }
+            if (i++ > 0) sb.append(", ");
+            sb.append(column).append(" = VALUES(").append(column).append(")");
+        }
+        if (i == 0) {
+            // Nothing but the key: keep the existing row
+            sb.append(primaryKeyColumn).append(" = ").append(primaryKeyColumn);
+        }
+        sb.append(";");
+        return sb.toString();
+    }
+
+    /**
+     * Collects the values to insert for a record: {@code @Automatic} columns are left out and
+     * {@code @PseudoEnum} values are validated.
+     */
+    private LinkedHashMap<String, Object> insertableValues(DatabaseRecord object) throws JDBCReflectionGeneralException, InitializationViolationException {
         LinkedHashMap<String, Object> values;
         try {
             values = object.getValues(Integer.MAX_VALUE);
@@ -326,39 +1174,81 @@ public interface MySQLTableServiceTemplate extends DatabaseTableService {
             throw new JDBCReflectionGeneralException(e);
         }
 
-        Object[] paramValues = new Object[values.size()];
-        int i = 0;
-        for (String key : values.keySet()) {
-            try {
-                Field annotationChk = object.getClass().getDeclaredField(key);
-                if (annotationChk.isAnnotationPresent(Automatic.class)) {
+        RecordMetadata metadata = object.getMetadata();
+        Iterator<Map.Entry<String, Object>> iterator = values.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Object> entry = iterator.next();
+            ColumnMetadata column = metadata.getColumn(entry.getKey());
+            if (column != null) {
+                if (column.isAutomatic()) {
+                    iterator.remove();
                     continue;
                 }
-                if (object.getClass().getDeclaredField(key).isAnnotationPresent(PseudoEnum.class)) {
-                    PseudoEnum enumValue = object.getClass().getDeclaredField(key).getAnnotation(PseudoEnum.class);
-                    if (!Arrays.asList(enumValue.accepts()).contains((String) values.get(key))) {
-                        throw new RuntimeException("Pseudo enum does not accept value: " + values.get(key));
-                    }
-                    if (!enumValue.nullable() && values.get(key) == null) {
-                        throw new RuntimeException("Pseudo enum does not allow null but got null for: " + key);
-                    }
-                }
-            } catch (NoSuchFieldException | SecurityException e) {
-                throw new RuntimeException(e);
+                column.validatePseudoEnum(entry.getValue());
             }
+        }
+        return values;
+    }
 
-            if (i > 0) {
-                columnNames.append(", ");
-                valuePlaceholders.append(", ");
+    /**
+     * Collects the insertable values of records of the same class.
+     *
+     * @param rows Receives the parameter row of each record.
+     * @return The inserted columns, shared by every row.
+     */
+    private List<String> insertableRows(List<DatabaseRecord> group, List<Object[]> rows) throws JDBCReflectionGeneralException, InitializationViolationException {
+        List<String> columns = null;
+        for (DatabaseRecord object : group) {
+            LinkedHashMap<String, Object> values = insertableValues(object);
+            if (columns == null) {
+                columns = new ArrayList<>(values.keySet());
+            } else if (!columns.equals(new ArrayList<>(values.keySet()))) {
+                throw new IllegalArgumentException("Records of " + object.getClass().getName() + " do not share the same insert columns");
             }
-            columnNames.append(key);
-            valuePlaceholders.append("?");
-            paramValues[i++] = values.get(key);
+            rows.add(values.values().toArray());
         }
+        return columns;
+    }
 
-        String sql = "INSERT INTO " + object.getTable() + " (" + columnNames + ") VALUES (" + valuePlaceholders + ");";
+    private String insertSql(String table, List<String> columns, int rows) {
+        StringBuilder sb = new StringBuilder("INSERT INTO ");
+        sb.append(table).append(" (").append(String.join(", ", columns)).append(") VALUES ");
+        String placeholders = "(" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+        for (int r = 0; r < rows; r++) {
+            if (r > 0) sb.append(", ");
+            sb.append(placeholders);
+        }
+        sb.append(";");
+        return sb.toString();
+    }
 
-        return executeUpdate(object.getDatabase(), sql, paramValues);
+    /**
+     * Runs one prepared statement for every parameter row, flushing a batch every {@code chunkSize} rows.
+     *
+     * @param counts Receives the affected row count of each batch.
+     */
+    private void executeBatches(String database, String sql, List<Object[]> rows, int chunkSize, List<Integer> counts) throws SQLException {
+        Connection connection = getConnection(database);
+        try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            for (int start = 0; start < rows.size(); start += chunkSize) {
+                for (int r = start; r < Math.min(start + chunkSize, rows.size()); r++) {
+                    DatabaseRecord.setObjects(preparedStatement, rows.get(r));
+                    preparedStatement.addBatch();
+                }
+                counts.add(affectedRows(preparedStatement.executeBatch()));
+            }
+        } finally {
+            releaseConnection(database, connection);
+        }
+    }
+
+    private int affectedRows(int[] batchCounts) {
+        int affected = 0;
+        for (int count : batchCounts) {
+            // Drivers may report SUCCESS_NO_INFO for statements that did succeed
+            affected += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+        }
+        return affected;
     }
 
     /**
@@ -372,9 +1262,14 @@ public interface MySQLTableServiceTemplate extends DatabaseTableService {
      * @throws IOException                   If an I/O error occurs.
      */
     default int delete(DatabaseRecord object) throws InitializationViolationException, JDBCReflectionGeneralException, SQLException, IOException {
-        String sql = "DELETE FROM " + object.getTable() + " WHERE " + object.getPrimaryKeyColumnName() + " = ?;";
+        String sql = SqlTemplateCache.get(object.getClass(), "delete", 0, List.of(), () -> new SqlTemplate(
+                "DELETE FROM " + object.getTable() + " WHERE " + object.getPrimaryKeyColumnName() + " = ?;", List.of())).sql();
         Object[] params = new Object[]{object.getPrimaryKeyValue()};
-        return executeUpdate(object.getDatabase(), sql, params);
+        try {
+            return executeUpdate(object.getDatabase(), sql, params);
+        } finally {
+            invalidateCached(List.of(object), true);
+        }
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package me.hysong.libcodablejdbc.utils.interfaces;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads one column of the current row by index and writes it into the target record.
+ * Readers are chosen once per mapped field, so the per-row work is a plain indexed call.
+ */
+@FunctionalInterface
+public interface ColumnReader {
+    void read(ResultSet rs, int index, Object target) throws SQLException;
+}
@@ -0,0 +1,12 @@
+package me.hysong.libcodablejdbc.utils.interfaces;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Opens a new physical connection to a database, e.g. through {@link java.sql.DriverManager}.
+ */
+@FunctionalInterface
+public interface ConnectionFactory {
+    Connection create(String database) throws SQLException;
+}
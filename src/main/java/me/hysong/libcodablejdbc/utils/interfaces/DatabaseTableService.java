@@ -2,31 +2,185 @@ package me.hysong.libcodablejdbc.utils.interfaces;
 
 import me.hysong.libcodablejdbc.utils.exceptions.InitializationViolationException;
 import me.hysong.libcodablejdbc.utils.exceptions.JDBCReflectionGeneralException;
+import me.hysong.libcodablejdbc.utils.objects.AsyncExecutor;
 import me.hysong.libcodablejdbc.utils.objects.DatabaseRecord;
+import me.hysong.libcodablejdbc.utils.objects.ForeignKeyResolver;
+import me.hysong.libcodablejdbc.utils.objects.MultiGetResult;
+import me.hysong.libcodablejdbc.utils.objects.QueryOptions;
+import me.hysong.libcodablejdbc.utils.objects.QueryResultCache;
+import me.hysong.libcodablejdbc.utils.objects.RecordCache;
+import me.hysong.libcodablejdbc.utils.objects.RecordCursor;
 import me.hysong.libcodablejdbc.utils.objects.SearchExpression;
 
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
 
 public interface DatabaseTableService {
+    int DEFAULT_BATCH_SIZE = 1000;
+
     Connection getConnection(String database) throws SQLException;
+
+    /**
+     * Called by the table service templates once they are done with a connection obtained from
+     * {@link #getConnection(String)}. Pooled implementations give the connection back here (see
+     * {@link me.hysong.libcodablejdbc.utils.objects.ConnectionPool}); the default keeps it open, for
+     * implementations sharing a single connection.
+     *
+     * @param database   The database the connection was obtained for.
+     * @param connection The connection.
+     */
+    default void releaseConnection(String database, Connection connection) throws SQLException {
+    }
+
+    /**
+     * The cache the table service templates read records by primary key through, and invalidate on
+     * writes. Implementations enabling it return the same instance on every call.
+     *
+     * @return The record cache, or null to not cache (the default).
+     */
+    default RecordCache getRecordCache() {
+        return null;
+    }
+
+    /**
+     * The cache the table service templates serve {@code searchBy} results from, marking the written
+     * tables stale on writes. Implementations enabling it return the same instance on every call.
+     *
+     * @return The query result cache, or null to not cache (the default).
+     */
+    default QueryResultCache getQueryResultCache() {
+        return null;
+    }
+
+    /**
+     * The executor the {@code ...Async} methods run on. Implementations with a connection pool return an
+     * executor limited to the pool size, the same instance on every call.
+     *
+     * @return The executor, {@link AsyncExecutor#shared()} by default.
+     */
+    default AsyncExecutor getAsyncExecutor() {
+        return AsyncExecutor.shared();
+    }
     
     <T> T executeQuery(String database, String sql, Object[] params, ResultSetProcessor<T> resultSetProcessor) throws SQLException, IOException, JDBCReflectionGeneralException, InitializationViolationException;
 
     int executeUpdate(String database, String sql, Object[] params) throws SQLException, IOException;
 
+    <T extends DatabaseRecord> RecordCursor<T> openCursor(int privilege, T blueprint, String sql, Object[] params, int fetchSize) throws SQLException, InitializationViolationException;
+
     LinkedHashMap<Object, DatabaseRecord> selectAll(int privilege, DatabaseRecord object) throws InitializationViolationException, JDBCReflectionGeneralException, SQLException, IOException;
 
     LinkedHashMap<Object, DatabaseRecord> selectBy(int privilege, DatabaseRecord blueprint, int offset, int limit, String[] columnNames, Object[] values) throws IOException, SQLException, InitializationViolationException, JDBCReflectionGeneralException;
 
+    LinkedHashMap<Object, DatabaseRecord> selectBy(int privilege, DatabaseRecord blueprint, int offset, int limit, String[] columnNames, Object[] values, QueryOptions options) throws IOException, SQLException, InitializationViolationException, JDBCReflectionGeneralException;
+
     LinkedHashMap<Object, DatabaseRecord> searchBy(int privilege, DatabaseRecord blueprint, int offset, int limit, SearchExpression[] expressions) throws IOException, SQLException, InitializationViolationException, JDBCReflectionGeneralException;
 
+    LinkedHashMap<Object, DatabaseRecord> searchBy(int privilege, DatabaseRecord blueprint, int offset, int limit, SearchExpression[] expressions, QueryOptions options) throws IOException, SQLException, InitializationViolationException, JDBCReflectionGeneralException;
+
     int update(int privilege, DatabaseRecord object) throws InitializationViolationException, JDBCReflectionGeneralException, SQLException, IOException;
 
+    int[] updateAll(int privilege, Collection<? extends DatabaseRecord> objects) throws InitializationViolationException, JDBCReflectionGeneralException, SQLException, IOException;
+
     int insert(DatabaseRecord object) throws InitializationViolationException, JDBCReflectionGeneralException, SQLException, IOException;
 
+    int[] insertAll(Collection<? extends DatabaseRecord> objects) throws InitializationViolationException, JDBCReflectionGeneralException, SQLException, IOException;
+
+    int[] insertAll(Collection<? extends DatabaseRecord> objects, int chunkSize, boolean multiRowValues) throws InitializationViolationException, JDBCReflectionGeneralException, SQLException, IOException;
+
+    int upsert(DatabaseRecord object) throws InitializationViolationException, JDBCReflectionGeneralException, SQLException, IOException;
+
+    int[] upsertAll(Collection<? extends DatabaseRecord> objects) throws InitializationViolationException, JDBCReflectionGeneralException, SQLException, IOException;
+
     int delete(DatabaseRecord object) throws InitializationViolationException, JDBCReflectionGeneralException, SQLException, IOException;
+
+    /**
+     * Loads the records of many primary keys with chunked IN queries of {@link ForeignKeyResolver#CHUNK_SIZE} keys.
+     *
+     * @see #getAll(Class, Collection, int, int)
+     */
+    default <T extends DatabaseRecord> MultiGetResult<T> getAll(Class<T> recordClass, Collection<?> primaryKeys, int privilege) throws InitializationViolationException, JDBCReflectionGeneralException, SQLException, IOException {
+        return getAll(recordClass, primaryKeys, privilege, ForeignKeyResolver.CHUNK_SIZE);
+    }
+
+    /**
+     * Loads the records of many primary keys. The keys are split into chunks of at most {@code chunkSize},
+     * each loaded with one {@code searchBy} IN query; the chunks of one call run concurrently, at most
+     * {@link AsyncExecutor#getMaxConcurrency()} of {@link #getAsyncExecutor()} at once. The bound is per call:
+     * concurrent calls, and async operations running meanwhile, are not counted against it.
+     *
+     * @param recordClass The record class.
+     * @param primaryKeys The primary keys; duplicates and nulls are dropped.
+     * @param privilege   The privilege level the records are read with.
+     * @param chunkSize   The maximum number of keys per query.
+     * @return The records in the order of the keys, and the keys no record was found for.
+     */
+    default <T extends DatabaseRecord> MultiGetResult<T> getAll(Class<T> recordClass, Collection<?> primaryKeys, int privilege, int chunkSize) throws InitializationViolationException, JDBCReflectionGeneralException, SQLException, IOException {
+        return MultiGetResult.fetch(this, recordClass, primaryKeys, privilege, chunkSize);
+    }
+
+    // 비동기 버전: 각 작업을 가상 스레드에서 실행하며, 데이터베이스별 동시 실행 수는 getAsyncExecutor() 가 제한함
+    // 예외는 CompletableFuture 의 예외 완료로 전달됨
+
+    default CompletableFuture<LinkedHashMap<Object, DatabaseRecord>> selectAllAsync(int privilege, DatabaseRecord object) {
+        return getAsyncExecutor().submit(databaseOf(object), () -> selectAll(privilege, object));
+    }
+
+    default CompletableFuture<LinkedHashMap<Object, DatabaseRecord>> selectByAsync(int privilege, DatabaseRecord blueprint, int offset, int limit, String[] columnNames, Object[] values) {
+        return selectByAsync(privilege, blueprint, offset, limit, columnNames, values, null);
+    }
+
+    default CompletableFuture<LinkedHashMap<Object, DatabaseRecord>> selectByAsync(int privilege, DatabaseRecord blueprint, int offset, int limit, String[] columnNames, Object[] values, QueryOptions options) {
+        return getAsyncExecutor().submit(databaseOf(blueprint), () -> selectBy(privilege, blueprint, offset, limit, columnNames, values, options));
+    }
+
+    default CompletableFuture<LinkedHashMap<Object, DatabaseRecord>> searchByAsync(int privilege, DatabaseRecord blueprint, int offset, int limit, SearchExpression[] expressions) {
+        return searchByAsync(privilege, blueprint, offset, limit, expressions, null);
+    }
+
+    default CompletableFuture<LinkedHashMap<Object, DatabaseRecord>> searchByAsync(int privilege, DatabaseRecord blueprint, int offset, int limit, SearchExpression[] expressions, QueryOptions options) {
+        return getAsyncExecutor().submit(databaseOf(blueprint), () -> searchBy(privilege, blueprint, offset, limit, expressions, options));
+    }
+
+    default CompletableFuture<Integer> updateAsync(int privilege, DatabaseRecord object) {
+        return getAsyncExecutor().submit(databaseOf(object), () -> update(privilege, object));
+    }
+
+    default CompletableFuture<int[]> updateAllAsync(int privilege, Collection<? extends DatabaseRecord> objects) {
+        return getAsyncExecutor().submit(databaseOf(objects), () -> updateAll(privilege, objects));
+    }
+
+    default CompletableFuture<Integer> insertAsync(DatabaseRecord object) {
+        return getAsyncExecutor().submit(databaseOf(object), () -> insert(object));
+    }
+
+    default CompletableFuture<int[]> insertAllAsync(Collection<? extends DatabaseRecord> objects) {
+        return getAsyncExecutor().submit(databaseOf(objects), () -> insertAll(objects));
+    }
+
+    default CompletableFuture<Integer> upsertAsync(DatabaseRecord object) {
+        return getAsyncExecutor().submit(databaseOf(object), () -> upsert(object));
+    }
+
+    default CompletableFuture<int[]> upsertAllAsync(Collection<? extends DatabaseRecord> objects) {
+        return getAsyncExecutor().submit(databaseOf(objects), () -> upsertAll(objects));
+    }
+
+    default CompletableFuture<Integer> deleteAsync(DatabaseRecord object) {
+        return getAsyncExecutor().submit(databaseOf(object), () -> delete(object));
+    }
+
+    private static String databaseOf(DatabaseRecord object) {
+        return object == null ? null : object.getMetadata().getDatabase();
+    }
+
+    private static String databaseOf(Collection<? extends DatabaseRecord> objects) {
+        // 여러 데이터베이스에 걸친 일괄 작업은 첫 레코드의 데이터베이스 한도를 사용
+        return objects == null || objects.isEmpty() ? null : databaseOf(objects.iterator().next());
+    }
 }
@@ -0,0 +1,57 @@
+package me.hysong.libcodablejdbc.utils.interfaces;
+
+/**
+ * Reads and writes a single field of a record instance.
+ * <p>
+ * Accessors are bound once per mapped field (see {@link FieldAccessorFactory}) so the hydration path
+ * does not pay for reflective access checks on every row. The primitive variants let implementations
+ * write {@code int}, {@code long}, {@code double}, ... columns without boxing; the default
+ * implementations fall back to the boxed {@link #get(Object)} / {@link #set(Object, Object)}.
+ * <p>
+ * Type mismatches are reported as {@link IllegalArgumentException}, like {@link java.lang.reflect.Field#set(Object, Object)}.
+ */
+public interface FieldAccessor {
+    Object get(Object target);
+
+    void set(Object target, Object value);
+
+    default int getInt(Object target) {
+        return (Integer) get(target);
+    }
+
+    default void setInt(Object target, int value) {
+        set(target, value);
+    }
+
+    default long getLong(Object target) {
+        return (Long) get(target);
+    }
+
+    default void setLong(Object target, long value) {
+        set(target, value);
+    }
+
+    default double getDouble(Object target) {
+        return (Double) get(target);
+    }
+
+    default void setDouble(Object target, double value) {
+        set(target, value);
+    }
+
+    default void setFloat(Object target, float value) {
+        set(target, value);
+    }
+
+    default void setShort(Object target, short value) {
+        set(target, value);
+    }
+
+    default void setByte(Object target, byte value) {
+        set(target, value);
+    }
+
+    default void setBoolean(Object target, boolean value) {
+        set(target, value);
+    }
+}
@@ -0,0 +1,8 @@
+package me.hysong.libcodablejdbc.utils.interfaces;
+
+import java.lang.reflect.Field;
+
+@FunctionalInterface
+public interface FieldAccessorFactory {
+    FieldAccessor create(Field field);
+}
@@ -0,0 +1,53 @@
+package me.hysong.libcodablejdbc.utils.interfaces;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reflection-free mapping of one record class, generated at compile time by the libcodablejdbc
+ * annotation processor as {@code <RecordClass>$$RecordCodec}.
+ * <p>
+ * Columns are addressed by their position in {@link #columns()}. Final and composition fields are not
+ * part of the codec and stay on the reflective path, so a codec may cover only a subset of the
+ * mapped columns of its class.
+ *
+ * @param <T> The record class.
+ */
+public interface RecordCodec<T> {
+    Class<T> recordClass();
+
+    /**
+     * @return The database column names handled by this codec, in codec column order.
+     */
+    String[] columns();
+
+    /**
+     * @return A new instance through the no-parameter constructor, or null if the class has none accessible.
+     */
+    T newInstance();
+
+    /**
+     * Reads the current row into the target.
+     *
+     * @param target  The record instance to populate.
+     * @param rs      The result set, positioned on a row.
+     * @param indexes The result set index of every codec column, 0 for columns absent from the query.
+     */
+    void hydrate(T target, ResultSet rs, int[] indexes) throws SQLException;
+
+    Object get(T record, int column);
+
+    void set(T record, int column, Object value);
+
+    /**
+     * Binds the value of a codec column as a statement parameter, without boxing primitive columns.
+     */
+    void bind(PreparedStatement ps, int parameterIndex, T record, int column) throws SQLException;
+
+    boolean hasPrimaryKey();
+
+    Object getPrimaryKey(T record);
+
+    void setPrimaryKey(T record, Object value);
+}
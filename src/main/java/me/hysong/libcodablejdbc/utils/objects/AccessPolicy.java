@@ -0,0 +1,71 @@
+package me.hysong.libcodablejdbc.utils.objects;
+
+import me.hysong.libcodablejdbc.Column;
+
+import java.util.Arrays;
+
+/**
+ * The field security policy of a {@link Column}, resolved once from the annotation.
+ * <p>
+ * Read and write rules are resolved separately: the read/write specific {@code allowedAccessLevels} and
+ * {@code minAccessLevel} take precedence over the common ones, and an allow list takes precedence over
+ * the minimum level. {@link Integer#MAX_VALUE} is always allowed.
+ */
+public final class AccessPolicy {
+    public static final AccessPolicy UNRESTRICTED = new AccessPolicy(new int[0], 0, new int[0], 0);
+
+    private final int[] readAllowedLevels;
+    private final int readMinLevel;
+    private final int[] writeAllowedLevels;
+    private final int writeMinLevel;
+
+    private AccessPolicy(int[] readAllowedLevels, int readMinLevel, int[] writeAllowedLevels, int writeMinLevel) {
+        this.readAllowedLevels = sorted(readAllowedLevels);
+        this.readMinLevel = readMinLevel;
+        this.writeAllowedLevels = sorted(writeAllowedLevels);
+        this.writeMinLevel = writeMinLevel;
+    }
+
+    /**
+     * @param column The column annotation, may be null.
+     * @return The policy of the annotation; {@link #UNRESTRICTED} without annotation.
+     */
+    public static AccessPolicy of(Column column) {
+        if (column == null) {
+            return UNRESTRICTED;
+        }
+        return new AccessPolicy(
+                column.readAllowedAccessLevels().length > 0 ? column.readAllowedAccessLevels() : column.allowedAccessLevels(),
+                column.readMinAccessLevel() > 0 ? column.readMinAccessLevel() : column.minAccessLevel(),
+                column.writeAllowedAccessLevels().length > 0 ? column.writeAllowedAccessLevels() : column.allowedAccessLevels(),
+                column.writeMinAccessLevel() > 0 ? column.writeMinAccessLevel() : column.minAccessLevel());
+    }
+
+    private static int[] sorted(int[] levels) {
+        int[] copy = levels.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    public boolean mayAccess(int privilegeLevel, boolean writeMode) {
+        return writeMode ? mayWrite(privilegeLevel) : mayRead(privilegeLevel);
+    }
+
+    public boolean mayRead(int privilegeLevel) {
+        return allows(readAllowedLevels, readMinLevel, privilegeLevel);
+    }
+
+    public boolean mayWrite(int privilegeLevel) {
+        return allows(writeAllowedLevels, writeMinLevel, privilegeLevel);
+    }
+
+    private static boolean allows(int[] allowedLevels, int minLevel, int privilegeLevel) {
+        if (privilegeLevel == Integer.MAX_VALUE) {
+            return true;
+        }
+        if (allowedLevels.length > 0) {
+            return Arrays.binarySearch(allowedLevels, privilegeLevel) >= 0;
+        }
+        return privilegeLevel >= minLevel;
+    }
+}
@@ -0,0 +1,92 @@
+package me.hysong.libcodablejdbc.utils.objects;
+
+import lombok.Getter;
+
+import java.util.concurrent.*;
+
+/**
+ * Runs the blocking table service operations behind the {@code ...Async} methods of
+ * {@link me.hysong.libcodablejdbc.utils.interfaces.DatabaseTableService}, each on its own virtual thread.
+ * <p>
+ * Each database has its own limit of operations running at once. Operations beyond the limit wait on the
+ * database's semaphore, parking their virtual thread, so fanning out many queries never holds more
+ * connections than the limit. Keep the limit at most the size of the connection pool partition, otherwise
+ * the extra operations wait for a connection in the pool instead, and may time out there.
+ * <p>
+ * The {@link RecordSession} of the submitting thread, if any, is carried over to the operation.
+ */
+public class AsyncExecutor {
+    public static final int DEFAULT_MAX_CONCURRENCY = 8;
+
+    private static final AsyncExecutor SHARED = new AsyncExecutor(DEFAULT_MAX_CONCURRENCY);
+
+    @Getter private final int maxConcurrency;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("codable-async-", 0).factory());
+    private final ConcurrentHashMap<String, Semaphore> limits = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxConcurrency The maximum number of operations running at once on each database.
+     */
+    public AsyncExecutor(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Concurrency limit must be positive: " + maxConcurrency);
+        }
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * @return The executor shared by the table services that do not provide their own, limited to
+     * {@link #DEFAULT_MAX_CONCURRENCY} operations per database.
+     */
+    public static AsyncExecutor shared() {
+        return SHARED;
+    }
+
+    /**
+     * Runs a blocking operation on a virtual thread, once the database has a free slot.
+     *
+     * @param database The database the operation runs on, null if unknown.
+     * @param task     The operation.
+     * @return The future completed with the result of the operation, or exceptionally with what it threw.
+     */
+    public <T> CompletableFuture<T> submit(String database, Callable<T> task) {
+        Semaphore limit = limitOf(database);
+        Callable<T> propagated = RecordSession.propagate(task);
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                limit.acquire();
+            } catch (InterruptedException e) {
+                future.completeExceptionally(e);
+                return;
+            }
+            try {
+                future.complete(propagated.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                limit.release();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * @return The number of operations running on the database.
+     */
+    public int getActiveCount(String database) {
+        return maxConcurrency - limitOf(database).availablePermits();
+    }
+
+    /**
+     * @return The approximate number of operations waiting for a free slot on the database.
+     */
+    public int getWaitingCount(String database) {
+        return limitOf(database).getQueueLength();
+    }
+
+    private Semaphore limitOf(String database) {
+        // 데이터베이스가 지정되지 않은 레코드는 하나의 한도를 공유
+        return limits.computeIfAbsent(database == null ? "" : database, k -> new Semaphore(maxConcurrency, true));
+    }
+}
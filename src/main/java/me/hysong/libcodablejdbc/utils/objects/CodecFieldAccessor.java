@@ -0,0 +1,39 @@
+package me.hysong.libcodablejdbc.utils.objects;
+
+import me.hysong.libcodablejdbc.utils.interfaces.FieldAccessor;
+import me.hysong.libcodablejdbc.utils.interfaces.RecordCodec;
+
+/**
+ * {@link FieldAccessor} backed by a generated {@link RecordCodec} column, or by its primary key.
+ */
+public class CodecFieldAccessor implements FieldAccessor {
+    static final int PRIMARY_KEY = -1;
+
+    private final RecordCodec<Object> codec;
+    private final int column;
+
+    @SuppressWarnings("unchecked")
+    CodecFieldAccessor(RecordCodec<?> codec, int column) {
+        this.codec = (RecordCodec<Object>) codec;
+        this.column = column;
+    }
+
+    @Override
+    public Object get(Object target) {
+        return column == PRIMARY_KEY ? codec.getPrimaryKey(target) : codec.get(target, column);
+    }
+
+    @Override
+    public void set(Object target, Object value) {
+        try {
+            if (column == PRIMARY_KEY) {
+                codec.setPrimaryKey(target, value);
+            } else {
+                codec.set(target, column, value);
+            }
+        } catch (ClassCastException | NullPointerException e) {
+            throw new IllegalArgumentException("Cannot assign " + (value == null ? "null" : value.getClass().getName())
+                    + " to column " + column + " of " + codec.recordClass().getName(), e);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package me.hysong.libcodablejdbc.utils.objects;
+
+import lombok.Getter;
+import me.hysong.libcodablejdbc.*;
+import me.hysong.libcodablejdbc.utils.interfaces.ColumnReader;
+import me.hysong.libcodablejdbc.utils.interfaces.FieldAccessor;
+import me.hysong.libcodablejdbc.utils.interfaces.RecordCodec;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable description of a single mapped field of a record class.
+ * Instances are created once per class by {@link RecordMetadata} and shared by all hydration and
+ * SQL-building paths, so no annotation has to be looked up again at runtime.
+ */
+@Getter
+public final class ColumnMetadata {
+    private final Field field;
+    private final FieldAccessor accessor;
+    private final String fieldName;
+    private final String columnName;
+    private final Class<?> type;
+    private final Column column;
+    private final boolean automatic;
+    private final PseudoEnum pseudoEnum;
+    private final List<String> pseudoEnumAccepts;
+    private final ForeignKey foreignKey;
+    private final ForeignKeyList foreignKeyList;
+    private final boolean composition;
+    private final String[] compositionKeys;
+    private final boolean primitiveFastPath;
+    private final ColumnReader reader;
+    // 생성된 코덱에서의 컬럼 위치, 코덱이 다루지 않는 컬럼이면 -1
+    private final int codecSlot;
+    private final int index;
+    private final AccessPolicy accessPolicy;
+
+    ColumnMetadata(Field field, int index, RecordCodec<?> codec, int codecSlot) {
+        field.setAccessible(true);
+        this.field = field;
+        this.index = index;
+        this.codecSlot = codec == null ? -1 : codecSlot;
+        this.accessor = this.codecSlot < 0 ? FieldAccessors.create(field) : new CodecFieldAccessor(codec, codecSlot);
+        this.fieldName = field.getName();
+        this.columnName = RSCodableUtil.getFieldNameInDB(field);
+        this.type = field.getType();
+        this.column = field.getAnnotation(Column.class);
+        this.accessPolicy = AccessPolicy.of(column);
+        this.automatic = field.isAnnotationPresent(Automatic.class);
+        this.pseudoEnum = field.getAnnotation(PseudoEnum.class);
+        this.pseudoEnumAccepts = pseudoEnum == null ? List.of() : Arrays.asList(pseudoEnum.accepts());
+        this.foreignKey = field.getAnnotation(ForeignKey.class);
+        this.foreignKeyList = field.getAnnotation(ForeignKeyList.class);
+        this.composition = type.isAssignableFrom(CompositionObject.class);
+        this.compositionKeys = composition ? resolveCompositionKeys(type) : null;
+
+        // Numeric and boolean primitives are written through the accessor's primitive setters.
+        // Foreign key columns still need the boxed value for fetching, char is decoded from text.
+        this.primitiveFastPath = type.isPrimitive() && type != char.class && !isForeignReference();
+        this.reader = ColumnReaders.forColumn(this);
+    }
+
+    private static String[] resolveCompositionKeys(Class<?> type) {
+        // Keys are declared by the composition type itself; a prototype is enough to read them.
+        try {
+            return ((CompositionObject) type.getConstructor().newInstance()).compositionKeys();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            return null;
+        }
+    }
+
+    public boolean isForeignReference() {
+        return foreignKey != null || foreignKeyList != null;
+    }
+
+    /**
+     * Validates a value against the {@link PseudoEnum} declaration of this column, if any.
+     *
+     * @param value The value about to be written.
+     * @throws RuntimeException If the value is not accepted by the pseudo enum.
+     */
+    public void validatePseudoEnum(Object value) {
+        if (pseudoEnum == null) {
+            return;
+        }
+        if (!pseudoEnumAccepts.contains((String) value)) {
+            throw new RuntimeException("Pseudo enum does not accept value: " + value);
+        }
+        if (!pseudoEnum.nullable() && value == null) {
+            throw new RuntimeException("Pseudo enum does not allow null but got null for: " + columnName);
+        }
+    }
+}
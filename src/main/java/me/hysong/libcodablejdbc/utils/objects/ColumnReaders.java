@@ -0,0 +1,328 @@
+package me.hysong.libcodablejdbc.utils.objects;
+
+import com.google.gson.JsonParser;
+import me.hysong.libcodablejdbc.CompositionObject;
+import me.hysong.libcodablejdbc.PseudoEnum;
+import me.hysong.libcodablejdbc.utils.exceptions.PseudoEnumValueNotPresentException;
+import me.hysong.libcodablejdbc.utils.interfaces.ColumnReader;
+import me.hysong.libcodablejdbc.utils.interfaces.FieldAccessor;
+import me.hysong.libcodablejson.JsonCodable;
+
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.function.Function;
+
+/**
+ * Chooses the typed {@link ColumnReader} of a mapped field.
+ * This is the type-targeted extraction formerly evaluated per cell in {@code RSCodable.objectifyCurrentRow}.
+ */
+public class ColumnReaders {
+
+    @FunctionalInterface
+    private interface ValueExtractor {
+        Object extract(ResultSet rs, int index) throws SQLException;
+    }
+
+    /**
+     * @param column The mapped column.
+     * @return The reader of the column, or null for composition fields, which span several
+     * columns and are planned per result set through {@link #composition(ColumnMetadata, String[], int[])}.
+     */
+    public static ColumnReader forColumn(ColumnMetadata column) {
+        FieldAccessor accessor = column.getAccessor();
+        Class<?> fieldType = column.getType();
+
+        if (column.isComposition()) {
+            return null;
+        }
+
+        // Primitive fast path: typed read, unboxed write
+        if (column.isPrimitiveFastPath()) {
+            if (fieldType == int.class) {
+                return (rs, index, target) -> accessor.setInt(target, rs.getInt(index));
+            } else if (fieldType == long.class) {
+                return (rs, index, target) -> accessor.setLong(target, rs.getLong(index));
+            } else if (fieldType == double.class) {
+                return (rs, index, target) -> accessor.setDouble(target, rs.getDouble(index));
+            } else if (fieldType == float.class) {
+                return (rs, index, target) -> accessor.setFloat(target, rs.getFloat(index));
+            } else if (fieldType == short.class) {
+                return (rs, index, target) -> accessor.setShort(target, rs.getShort(index));
+            } else if (fieldType == byte.class) {
+                return (rs, index, target) -> accessor.setByte(target, rs.getByte(index));
+            } else {
+                return (rs, index, target) -> accessor.setBoolean(target, rs.getBoolean(index));
+            }
+        }
+
+        ValueExtractor extractor = extractorFor(column);
+        boolean primitive = fieldType.isPrimitive();
+        return (rs, index, target) -> {
+            Object value = extractor.extract(rs, index);
+
+            // Assign if not null OR field is primitive (needs a default already handled)
+            if (value != null || primitive) {
+                accessor.set(target, value);
+            }
+        };
+    }
+
+    /**
+     * Builds the reader of a composition field, whose value is spread over several prefixed columns.
+     *
+     * @param column     The composition column.
+     * @param keys       The composition keys, without prefix.
+     * @param keyIndexes The result set index of each prefixed key, 0 when absent.
+     * @return The reader; its index argument is ignored.
+     */
+    public static ColumnReader composition(ColumnMetadata column, String[] keys, int[] keyIndexes) {
+        FieldAccessor accessor = column.getAccessor();
+        Class<?> fieldType = column.getType();
+        String prefix = column.getFieldName() + "_";
+        return (rs, index, target) -> {
+            try {
+                CompositionObject co = (CompositionObject) fieldType.getConstructor().newInstance();
+                LinkedHashMap<String, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < keys.length; i++) {
+                    map.put(keys[i], keyIndexes[i] > 0 ? rs.getObject(keyIndexes[i]) : null);
+                }
+                co.setPrefix(prefix);
+                co.compose(map);
+                accessor.set(target, co);
+            } catch (Throwable e) {
+                e.printStackTrace();
+            }
+        };
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ValueExtractor extractorFor(ColumnMetadata column) {
+        Class<?> fieldType = column.getType();
+
+        // --- Type-targeted extraction (NULL-safe where relevant) ---
+        if (fieldType == String.class) {
+            return ResultSet::getString;
+
+        } else if (fieldType == int.class || fieldType == Integer.class) {
+            return (rs, index) -> {
+                int v = rs.getInt(index);
+                return rs.wasNull() ? (fieldType.isPrimitive() ? 0 : null) : v;
+            };
+
+        } else if (fieldType == long.class || fieldType == Long.class) {
+            return (rs, index) -> {
+                long v = rs.getLong(index);
+                return rs.wasNull() ? (fieldType.isPrimitive() ? 0L : null) : v;
+            };
+
+        } else if (fieldType == short.class || fieldType == Short.class) {
+            return (rs, index) -> {
+                short v = rs.getShort(index);
+                return rs.wasNull() ? (fieldType.isPrimitive() ? (short) 0 : null) : v;
+            };
+
+        } else if (fieldType == byte.class || fieldType == Byte.class) {
+            return (rs, index) -> {
+                byte v = rs.getByte(index);
+                return rs.wasNull() ? (fieldType.isPrimitive() ? (byte) 0 : null) : v;
+            };
+
+        } else if (fieldType == double.class || fieldType == Double.class) {
+            return (rs, index) -> {
+                double v = rs.getDouble(index);
+                return rs.wasNull() ? (fieldType.isPrimitive() ? 0d : null) : v;
+            };
+
+        } else if (fieldType == float.class || fieldType == Float.class) {
+            return (rs, index) -> {
+                float v = rs.getFloat(index);
+                return rs.wasNull() ? (fieldType.isPrimitive() ? 0f : null) : v;
+            };
+
+        } else if (fieldType == boolean.class || fieldType == Boolean.class) {
+            return (rs, index) -> {
+                boolean v = rs.getBoolean(index);
+                return rs.wasNull() ? (fieldType.isPrimitive() ? false : null) : v;
+            };
+
+        } else if (fieldType == byte[].class) {
+            return ResultSet::getBytes;
+
+        } else if (fieldType == int[].class || fieldType == Integer[].class) {
+            return array(int[].class, Integer[].class, o -> ((Number) o).intValue());
+
+        } else if (fieldType == long[].class || fieldType == Long[].class) {
+            return array(long[].class, Long[].class, o -> ((Number) o).longValue());
+
+        } else if (fieldType == short[].class || fieldType == Short[].class) {
+            return array(short[].class, Short[].class, o -> ((Number) o).shortValue());
+
+        } else if (fieldType == double[].class || fieldType == Double[].class) {
+            return array(double[].class, Double[].class, o -> ((Number) o).doubleValue());
+
+        } else if (fieldType == float[].class || fieldType == Float[].class) {
+            return array(float[].class, Float[].class, o -> ((Number) o).floatValue());
+
+        } else if (fieldType == char.class || fieldType == Character.class) {
+            return (rs, index) -> {
+                String s = rs.getString(index);
+                if (s != null && !s.isEmpty()) {
+                    return s.charAt(0);
+                }
+                return fieldType.isPrimitive() ? '\u0000' : null;
+            };
+
+        } else if (fieldType == boolean[].class || fieldType == Boolean[].class) {
+            return array(boolean[].class, Boolean[].class, o -> (Boolean) o);
+
+        } else if (fieldType == java.math.BigDecimal.class) {
+            return ResultSet::getBigDecimal;
+
+        } else if (fieldType == java.math.BigInteger.class) {
+            return (rs, index) -> {
+                String s = rs.getString(index);
+                return (s == null) ? null : new java.math.BigInteger(s);
+            };
+
+        } else if (fieldType == java.util.Date.class) {
+            return (rs, index) -> {
+                java.sql.Timestamp ts = rs.getTimestamp(index);
+                return (ts == null) ? null : new java.util.Date(ts.getTime());
+            };
+
+        } else if (fieldType == java.sql.Date.class) {
+            return ResultSet::getDate;
+
+        } else if (fieldType == java.sql.Time.class) {
+            return ResultSet::getTime;
+
+        } else if (fieldType == java.sql.Timestamp.class) {
+            return ResultSet::getTimestamp;
+
+        } else if (fieldType == java.time.LocalDate.class) {
+            return (rs, index) -> {
+                java.sql.Date d = rs.getDate(index);
+                return (d == null) ? null : d.toLocalDate();
+            };
+
+        } else if (fieldType == java.time.LocalTime.class) {
+            return (rs, index) -> {
+                java.sql.Time t = rs.getTime(index);
+                return (t == null) ? null : t.toLocalTime();
+            };
+
+        } else if (fieldType == java.time.LocalDateTime.class) {
+            return (rs, index) -> {
+                java.sql.Timestamp ts = rs.getTimestamp(index);
+                return (ts == null) ? null : ts.toLocalDateTime();
+            };
+
+        } else if (fieldType == java.time.OffsetDateTime.class) {
+            // Best effort: try JDBC 4.2 typed getObject; fallback to ISO-8601 text
+            return (rs, index) -> {
+                try {
+                    return rs.getObject(index, java.time.OffsetDateTime.class);
+                } catch (Throwable ignore) {
+                    String s = rs.getString(index);
+                    return (s == null) ? null : java.time.OffsetDateTime.parse(s);
+                }
+            };
+
+        } else if (fieldType == java.util.UUID.class) {
+            return (rs, index) -> {
+                try {
+                    return rs.getObject(index, java.util.UUID.class);
+                } catch (Throwable ignore) {
+                    String s = rs.getString(index);
+                    return (s == null) ? null : java.util.UUID.fromString(s);
+                }
+            };
+
+        } else if (column.getPseudoEnum() != null) {
+            PseudoEnum enumValue = column.getPseudoEnum();
+            return (rs, index) -> {
+                String valueNow = null;
+                try {
+                    valueNow = rs.getString(index);
+                } catch (Throwable e) {
+                    e.printStackTrace();
+                }
+                if (valueNow == null) {
+                    if (!enumValue.nullable()) {
+                        throw new NullPointerException("Non-nullable field has null value returned.");
+                    }
+                    return null;
+                } else if (column.getPseudoEnumAccepts().contains(valueNow) || enumValue.noStrict()) {
+                    return valueNow;
+                } else {
+                    throw new PseudoEnumValueNotPresentException("Value '" + valueNow + "' is not in " + column.getPseudoEnumAccepts());
+                }
+            };
+
+        } else if (fieldType.isEnum()) {
+            // Prefer string name; if null, try ordinal
+            Object[] constants = fieldType.getEnumConstants();
+            return (rs, index) -> {
+                String name = rs.getString(index);
+                if (name != null) {
+                    return Enum.valueOf((Class<? extends Enum>) fieldType.asSubclass(Enum.class), name);
+                }
+                int ord = rs.getInt(index);
+                if (!rs.wasNull() && ord >= 0 && ord < constants.length) {
+                    return constants[ord];
+                }
+                return null;
+            };
+
+        } else if (fieldType.isAssignableFrom(JsonCodable.class)) {
+            // Decode back to java object
+            return (rs, index) -> {
+                String rawJson = rs.getString(index);
+                if (rawJson == null) {
+                    return null;
+                }
+                try {
+                    JsonCodable jc = (JsonCodable) (fieldType.getConstructor().newInstance());
+                    jc.fromJson(JsonParser.parseString(rawJson));
+                    return jc;
+                } catch (Throwable e) {
+                    e.printStackTrace();
+                    return null;
+                }
+            };
+
+        } else {
+            // Last resort: JDBC 4.2 typed getObject; if unsupported, plain getObject
+            return (rs, index) -> {
+                try {
+                    return rs.getObject(index, fieldType);
+                } catch (Throwable ignore) {
+                    return rs.getObject(index);
+                }
+            };
+        }
+    }
+
+    private static ValueExtractor array(Class<?> primitiveArrayType, Class<?> boxedArrayType, Function<Object, Object> convert) {
+        Class<?> componentType = boxedArrayType.getComponentType();
+        return (rs, index) -> {
+            Array sqlArray = rs.getArray(index);
+            if (sqlArray == null) {
+                return null;
+            }
+            Object arr = sqlArray.getArray();
+            if (primitiveArrayType.isInstance(arr) || boxedArrayType.isInstance(arr)) {
+                return arr;
+            } else if (arr instanceof Object[] objArr) {
+                Object[] converted = (Object[]) java.lang.reflect.Array.newInstance(componentType, objArr.length);
+                for (int i = 0; i < objArr.length; i++) {
+                    converted[i] = (objArr[i] != null) ? convert.apply(objArr[i]) : null;
+                }
+                return converted;
+            }
+            return null;
+        };
+    }
+}
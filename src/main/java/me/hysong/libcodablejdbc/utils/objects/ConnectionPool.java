@@ -0,0 +1,249 @@
+package me.hysong.libcodablejdbc.utils.objects;
+
+import lombok.Getter;
+import me.hysong.libcodablejdbc.utils.interfaces.ConnectionFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, per-database pool of JDBC connections for {@link me.hysong.libcodablejdbc.utils.interfaces.DatabaseTableService}
+ * implementations: hand out {@link #borrow(String)} from {@code getConnection} and give connections back
+ * with {@link #release(String, Connection)} from {@code releaseConnection}.
+ * <p>
+ * Each database has its own partition of at most {@code maxSize} connections. Borrowing takes a permit of
+ * the partition's semaphore, so waiting threads park instead of spinning or holding a monitor (safe for
+ * virtual threads), and idle connections sit in a lock-free deque, most recently used first. A connection
+ * is validated on borrow unless it was used very recently, and idle connections older than the idle
+ * timeout are closed instead of being reused.
+ * <p>
+ * Pooled connections cache their prepared statements (see {@link StatementCache}), so the template
+ * methods' prepare/close per call reuses statements across borrows. Set the cache size to 0 to disable it.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private record IdleConnection(Connection connection, long releasedAt) {
+    }
+
+    private final class Partition {
+        private final Semaphore permits = new Semaphore(maxSize, true);
+        private final ConcurrentLinkedDeque<IdleConnection> idle = new ConcurrentLinkedDeque<>();
+    }
+
+    private final ConnectionFactory factory;
+    @Getter private final int maxSize;
+    @Getter private Duration acquireTimeout = Duration.ofSeconds(30);
+    @Getter private Duration idleTimeout = Duration.ofMinutes(10);
+    @Getter private Duration validationBypass = Duration.ofMillis(500);
+    @Getter private int validationTimeoutSeconds = 5;
+    @Getter private int statementCacheSize = 64;
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private final ConcurrentHashMap<String, Partition> partitions = new ConcurrentHashMap<>();
+    // 빌려준 연결과 그 연결을 꺼낸 파티션
+    private final ConcurrentHashMap<Connection, Partition> borrowed = new ConcurrentHashMap<>();
+    private volatile boolean closed = false;
+
+    public ConnectionPool(ConnectionFactory factory, int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be positive: " + maxSize);
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param acquireTimeout How long {@link #borrow(String)} waits for a free connection before failing.
+     */
+    public ConnectionPool acquireTimeout(Duration acquireTimeout) {
+        this.acquireTimeout = acquireTimeout;
+        return this;
+    }
+
+    /**
+     * @param idleTimeout How long a connection may stay unused in the pool before it is closed.
+     */
+    public ConnectionPool idleTimeout(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+        return this;
+    }
+
+    /**
+     * @param validationBypass Connections released more recently than this are handed out without validation.
+     */
+    public ConnectionPool validationBypass(Duration validationBypass) {
+        this.validationBypass = validationBypass;
+        return this;
+    }
+
+    /**
+     * @param validationTimeoutSeconds The timeout passed to {@link Connection#isValid(int)} on borrow.
+     */
+    public ConnectionPool validationTimeoutSeconds(int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        return this;
+    }
+
+    /**
+     * @param statementCacheSize The maximum number of cached prepared statements per connection, 0 to disable.
+     *                           Applies to connections opened afterwards.
+     */
+    public ConnectionPool statementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+        return this;
+    }
+
+    /**
+     * Takes a connection to the given database, reusing an idle one if possible.
+     *
+     * @param database The database name, passed to the connection factory.
+     * @return A valid connection, to be given back with {@link #release(String, Connection)}.
+     * @throws SQLException If no connection becomes free within the acquire timeout, or opening one fails.
+     */
+    public Connection borrow(String database) throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        Partition partition = partitions.computeIfAbsent(database, k -> new Partition());
+        try {
+            if (!partition.permits.tryAcquire(acquireTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new SQLException("Timed out after " + acquireTimeout.toMillis() + " ms waiting for a connection to " + database);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection to " + database, e);
+        }
+
+        try {
+            Connection connection = takeIdle(partition);
+            if (connection == null) {
+                connection = factory.create(database);
+                if (statementCacheSize > 0) {
+                    connection = StatementCache.wrap(connection, statementCacheSize, statementCacheHits, statementCacheMisses);
+                }
+            }
+            borrowed.put(connection, partition);
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            partition.permits.release();
+            throw e;
+        }
+    }
+
+    private Connection takeIdle(Partition partition) {
+        long now = System.nanoTime();
+        IdleConnection candidate;
+        while ((candidate = partition.idle.pollFirst()) != null) {
+            long idleNanos = now - candidate.releasedAt();
+            if (idleNanos > idleTimeout.toNanos()) {
+                closeQuietly(candidate.connection());
+                continue;
+            }
+            if (idleNanos > validationBypass.toNanos() && !isValid(candidate.connection())) {
+                closeQuietly(candidate.connection());
+                continue;
+            }
+            return candidate.connection();
+        }
+        return null;
+    }
+
+    private boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Gives a borrowed connection back to the pool. Connections not borrowed from this pool, or released
+     * twice, are ignored. Closed connections only free their slot; open ones are reset to auto-commit
+     * (rolling back any pending transaction) and kept for reuse.
+     * <p>
+     * The connection always goes back to the partition it was borrowed from, whatever database is passed.
+     *
+     * @param database   The database the connection was borrowed for; not used to find its partition.
+     * @param connection The connection.
+     */
+    public void release(String database, Connection connection) {
+        Partition partition = connection == null ? null : borrowed.remove(connection);
+        if (partition == null) {
+            return;
+        }
+        try {
+            if (closed || connection.isClosed()) {
+                closeQuietly(connection);
+                return;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            partition.idle.offerFirst(new IdleConnection(connection, System.nanoTime()));
+        } catch (SQLException e) {
+            closeQuietly(connection);
+        } finally {
+            partition.permits.release();
+        }
+    }
+
+    /**
+     * @param database The database name.
+     * @return The number of idle connections currently pooled for the database.
+     */
+    public int getIdleCount(String database) {
+        Partition partition = partitions.get(database);
+        return partition == null ? 0 : partition.idle.size();
+    }
+
+    /**
+     * @param database The database name.
+     * @return The number of connections currently borrowed for the database.
+     */
+    public int getActiveCount(String database) {
+        Partition partition = partitions.get(database);
+        return partition == null ? 0 : maxSize - partition.permits.availablePermits();
+    }
+
+    /**
+     * @return The number of prepared statements served from a connection's statement cache.
+     */
+    public long getStatementCacheHits() {
+        return statementCacheHits.sum();
+    }
+
+    /**
+     * @return The number of prepared statements that had to be prepared by the driver.
+     */
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.sum();
+    }
+
+    /**
+     * Closes every idle connection and refuses further borrows. Borrowed connections are closed when released.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Partition partition : partitions.values()) {
+            IdleConnection idle;
+            while ((idle = partition.idle.pollFirst()) != null) {
+                closeQuietly(idle.connection());
+            }
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package me.hysong.libcodablejdbc.utils.objects;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Encoding of keyset pagination positions: the sort columns and the values of the last row of a page, as
+ * URL-safe Base64. Only the scalar types {@link DatabaseRecord#setObject} binds natively can be encoded.
+ */
+final class ContinuationToken {
+    private static final byte VERSION = 1;
+
+    private ContinuationToken() {
+    }
+
+    static String encode(List<String> columns, Object[] values) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeShort(columns.size());
+            for (int i = 0; i < columns.size(); i++) {
+                out.writeUTF(columns.get(i));
+                writeValue(out, columns.get(i), values[i]);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * @param columns The sort columns the token must have been built for.
+     * @return The values of the token, in column order.
+     * @throws IllegalArgumentException If the token is malformed or was built for other sort columns.
+     */
+    static Object[] decode(String token, List<String> columns) {
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<Object> values = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+            if (in.readByte() != VERSION) {
+                throw new IOException("Unknown token version");
+            }
+            int count = in.readShort();
+            for (int i = 0; i < count; i++) {
+                names.add(in.readUTF());
+                values.add(readValue(in));
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Malformed continuation token", e);
+        }
+        if (!names.equals(columns)) {
+            throw new IllegalArgumentException("Continuation token was built for the sort order " + names + ", not " + columns);
+        }
+        return values.toArray();
+    }
+
+    private static void writeValue(DataOutputStream out, String column, Object value) throws IOException {
+        switch (value) {
+            case null -> out.writeByte('N');
+            case String s -> {
+                out.writeByte('S');
+                out.writeUTF(s);
+            }
+            case Integer v -> {
+                out.writeByte('I');
+                out.writeInt(v);
+            }
+            case Long v -> {
+                out.writeByte('L');
+                out.writeLong(v);
+            }
+            case Double v -> {
+                out.writeByte('D');
+                out.writeDouble(v);
+            }
+            case Boolean v -> {
+                out.writeByte('Z');
+                out.writeBoolean(v);
+            }
+            case BigDecimal v -> {
+                out.writeByte('B');
+                out.writeUTF(v.toString());
+            }
+            case LocalDate v -> {
+                out.writeByte('d');
+                out.writeUTF(v.toString());
+            }
+            case LocalDateTime v -> {
+                out.writeByte('t');
+                out.writeUTF(v.toString());
+            }
+            case Timestamp v -> {
+                out.writeByte('T');
+                out.writeUTF(v.toString());
+            }
+            case java.sql.Date v -> {
+                out.writeByte('Q');
+                out.writeUTF(v.toString());
+            }
+            default -> throw new IllegalArgumentException("Cannot paginate on column " + column + " of type " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        return switch (in.readByte()) {
+            case 'N' -> null;
+            case 'S' -> in.readUTF();
+            case 'I' -> in.readInt();
+            case 'L' -> in.readLong();
+            case 'D' -> in.readDouble();
+            case 'Z' -> in.readBoolean();
+            case 'B' -> new BigDecimal(in.readUTF());
+            case 'd' -> LocalDate.parse(in.readUTF());
+            case 't' -> LocalDateTime.parse(in.readUTF());
+            case 'T' -> Timestamp.valueOf(in.readUTF());
+            case 'Q' -> java.sql.Date.valueOf(in.readUTF());
+            default -> throw new IOException("Unknown value tag");
+        };
+    }
+}
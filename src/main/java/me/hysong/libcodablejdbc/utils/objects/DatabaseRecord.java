@@ -6,6 +6,7 @@ import me.hysong.libcodablejdbc.*;
 import me.hysong.libcodablejdbc.utils.exceptions.InitializationViolationException;
 import me.hysong.libcodablejdbc.utils.exceptions.JDBCReflectionGeneralException;
 import me.hysong.libcodablejdbc.utils.interfaces.DatabaseTableService;
+import me.hysong.libcodablejdbc.utils.interfaces.FieldAccessor;
 import me.hysong.libcodablejson.JsonCodable;
 
 import java.io.IOException;
@@ -16,16 +17,79 @@ import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.stream.Stream;
 
 public abstract class DatabaseRecord implements RSCodable {
     private static final ObjectMapper objectMapper = new ObjectMapper();
     @Getter private boolean isPKInitialized = false;
     @Getter private final DatabaseTableService controller;
+    // 마지막으로 읽거나 쓴 시점의 컬럼 값 (변경 추적용)
+    private transient Object[] storedState;
 
     public DatabaseRecord(DatabaseTableService controller) {
         this.controller = controller;
     }
 
+    /**
+     * Remembers the current column values as the stored state, so {@link #update(int)} only writes the
+     * columns changed afterwards. Called when the record is hydrated and after it is written.
+     */
+    public void snapshotState() {
+        storedState = RecordSnapshot.take(getMetadata(), this);
+    }
+
+    /**
+     * Remembers the current values of some columns as their stored state, e.g. the columns an update wrote.
+     * The other columns keep their stored state, so changes that were not written stay dirty.
+     */
+    public void snapshotColumns(Collection<ColumnMetadata> columns) {
+        storedState = RecordSnapshot.refresh(storedState, getMetadata(), this, columns);
+    }
+
+    /**
+     * Forgets the stored state, so the next update writes every column again.
+     */
+    public void discardSnapshot() {
+        storedState = null;
+    }
+
+    /**
+     * @return Whether the record remembers its stored state, i.e. was hydrated or written.
+     */
+    public boolean isTracked() {
+        return storedState != null;
+    }
+
+    /**
+     * @param column A column of this record.
+     * @return Whether the column changed since the stored state; always true for untracked records.
+     */
+    public boolean isDirty(ColumnMetadata column) {
+        return storedState == null || RecordSnapshot.isChanged(storedState[column.getIndex()], column.getAccessor().get(this));
+    }
+
+    /**
+     * @return Whether any column changed since the stored state; always true for untracked records.
+     */
+    public boolean isDirty() {
+        if (storedState == null) {
+            return true;
+        }
+        for (ColumnMetadata column : getMetadata().getColumns()) {
+            if (isDirty(column)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Shares the stored state of another record of the same class, e.g. one this record is a copy of.
+     */
+    void copySnapshot(DatabaseRecord from) {
+        this.storedState = from.storedState;
+    }
+
     public int update(int privilege) throws JDBCReflectionGeneralException, SQLException, InitializationViolationException, IOException {
         return controller.update(privilege, this);
     }
@@ -46,20 +110,59 @@ public abstract class DatabaseRecord implements RSCodable {
                 (rs) -> {
                     LinkedHashMap<Object, DatabaseRecord> result = new LinkedHashMap<>();
                     Class<?> objectClass = this.getClass();
+                    RowDecoderPlan plan = RowDecoderPlan.of(getMetadata(), rs);
+                    RecordSession session = RecordSession.current();
+                    ArrayList<DatabaseRecord> loaded = new ArrayList<>();
                     while (rs.next()) {
                         try {
-                            DatabaseRecord newInstance = (DatabaseRecord) objectClass.getDeclaredConstructor().newInstance();
-                            newInstance.objectifyCurrentRow(Integer.MAX_VALUE, rs);
-                            result.put(newInstance.getPrimaryKeyValue(), newInstance);
+                            DatabaseRecord existing = session == null || plan.getPrimaryKeyIndex() == 0 ? null : session.get(objectClass, rs.getObject(plan.getPrimaryKeyIndex()));
+                            if (existing != null) {
+                                result.put(existing.getPrimaryKeyValue(), existing);
+                                continue;
+                            }
+                            DatabaseRecord newInstance = (DatabaseRecord) plan.getMetadata().newInstance();
+                            newInstance.objectifyCurrentRow(Integer.MAX_VALUE, rs, plan, false);
+                            DatabaseRecord registered = session == null ? newInstance : session.register(newInstance);
+                            if (registered == newInstance) {
+                                loaded.add(newInstance);
+                            }
+                            result.put(registered.getPrimaryKeyValue(), registered);
                         } catch (NoSuchMethodException | InvocationTargetException | InstantiationException | IllegalAccessException e) {
                             throw new JDBCReflectionGeneralException("Expected a public, no-parameter constructor for class " + objectClass.getName(), e);
                         }
                     }
+                    // 외래키 참조는 행마다가 아니라 결과 전체에 대해 한 번에 가져옴
+                    ForeignKeyResolver.resolve(Integer.MAX_VALUE, loaded, plan.getForeignReferences());
                     return result;
                 }
         );
     }
 
+    /**
+     * Cursor variant of {@link #directSQL(String, Object[])} that hydrates one row at a time.
+     *
+     * @param fetchSize The fetch size hint passed to the driver, 0 for the driver default.
+     * @return The open cursor; the caller must close it.
+     */
+    public RecordCursor<DatabaseRecord> directSQLCursor(String sql, Object[] params, int fetchSize) throws SQLException, InitializationViolationException {
+        return controller.openCursor(Integer.MAX_VALUE, this, sql, params, fetchSize);
+    }
+
+    /**
+     * Stream variant of {@link #directSQL(String, Object[])}; the stream must be closed.
+     */
+    public Stream<DatabaseRecord> directSQLStream(String sql, Object[] params, int fetchSize) throws SQLException, InitializationViolationException {
+        return directSQLCursor(sql, params, fetchSize).stream();
+    }
+
+    /**
+     * Publisher variant of {@link #directSQL(String, Object[])}: each subscriber runs the query on its first
+     * request and reads rows only as it requests them.
+     */
+    public RecordPublisher<DatabaseRecord> directSQLPublisher(String sql, Object[] params, int fetchSize) {
+        return new RecordPublisher<>(() -> directSQLCursor(sql, params, fetchSize));
+    }
+
     public LinkedHashMap<Object, DatabaseRecord> selectBy(int privilege, String[] columnNames, int offset, int limit) throws JDBCReflectionGeneralException, SQLException, InitializationViolationException, IOException {
         // Get values for the specified column names in current object
         LinkedHashMap<String, Object> allValues;
@@ -93,47 +196,51 @@ public abstract class DatabaseRecord implements RSCodable {
         Object firstIndex = selected.sequencedKeySet().getFirst();
         DatabaseRecord loaded = selected.get(firstIndex);
 
-        for (Field field : loaded.getClass().getDeclaredFields()) {
-            field.setAccessible(true);
-            field.set(this, field.get(loaded));
+        RecordMetadata metadata = RecordMetadata.of(loaded.getClass());
+        PrivilegeView view = metadata.getView(privilege);
+        if (!view.isNarrowed()) {
+            metadata.copyState(loaded, this);
+            copySnapshot(loaded);
+            return;
         }
+        // 권한으로 읽지 않은 컬럼은 이 객체의 값을 그대로 둠
+        snapshotColumns(metadata.copyState(loaded, this, view));
+    }
+
+    public RecordMetadata getMetadata() {
+        return RecordMetadata.of(this.getClass());
     }
 
     public String getDatabase() throws InitializationViolationException{
-        if (!this.getClass().isAnnotationPresent(Database.class)) {
+        String database = getMetadata().getDatabase();
+        if (database == null) {
             throw new InitializationViolationException("Database is not configured using @Database(db=...) annotation.");
         }
-        Database annotation = this.getClass().getAnnotation(Database.class);
-        return annotation.db();
+        return database;
     }
 
     public String getTable() throws InitializationViolationException {
-        if (!this.getClass().isAnnotationPresent(Database.class)) {
+        String table = getMetadata().getTable();
+        if (table == null) {
             throw new InitializationViolationException("Table is not configured using @Database(table=...) annotation.");
         }
-        Database annotation = this.getClass().getAnnotation(Database.class);
-        return annotation.table();
+        return table;
     }
 
     public String getPrimaryKeyColumnName() throws InitializationViolationException{
-        if (!this.getClass().isAnnotationPresent(PrimaryKey.class)) {
+        String column = getMetadata().getPrimaryKeyColumnName();
+        if (column == null) {
             throw new InitializationViolationException("Primary key is not configured using @PrimaryKey annotation.");
         }
-        PrimaryKey annotation = this.getClass().getAnnotation(PrimaryKey.class);
-        return annotation.column();
+        return column;
     }
 
 
     public Object getPrimaryKeyValue() throws InitializationViolationException, JDBCReflectionGeneralException {
-        if (!this.getClass().isAnnotationPresent(PrimaryKey.class)) {
-            throw new InitializationViolationException("Primary key is not configured using @PrimaryKey annotation.");
-        }
-        PrimaryKey annotation = this.getClass().getAnnotation(PrimaryKey.class);
+        FieldAccessor accessor = getPrimaryKeyAccessor();
         try {
-            Field f = this.getClass().getDeclaredField(annotation.column());
-            f.setAccessible(true);
-            return f.get(this);
-        } catch (NoSuchFieldException | IllegalAccessException e) {
+            return accessor.get(this);
+        } catch (RuntimeException e) {
             throw new JDBCReflectionGeneralException(e);
         }
     }
@@ -142,83 +249,29 @@ public abstract class DatabaseRecord implements RSCodable {
         if (isPKInitialized) {
             throw new InitializationViolationException("Primary key is already initialized.");
         }
-        if (!this.getClass().isAnnotationPresent(PrimaryKey.class)) {
-            throw new InitializationViolationException("Primary key is not configured using @PrimaryKey annotation.");
-        }
-        PrimaryKey annotation = this.getClass().getAnnotation(PrimaryKey.class);
+        FieldAccessor accessor = getPrimaryKeyAccessor();
         try {
-            Field f = this.getClass().getDeclaredField(annotation.column());
-            f.setAccessible(true);
-            f.set(this, value);
+            accessor.set(this, value);
             isPKInitialized = true;
-        } catch (IllegalAccessException | NoSuchFieldException e) {
+        } catch (RuntimeException e) {
             throw new JDBCReflectionGeneralException(e);
         }
     }
 
-    public boolean mayAccessByFieldSecurityPolicy(int privilegeLevel, boolean writeMode, Field field) {
-
-        // 권한 체크 우선순위:
-        // 1. allowedAccessLevels 속성
-        // 2. minAccessLevel 속성
-
-        // 만약 Integer.MAX_VALUE 가 들어온다면 무조건 허용
-        if (privilegeLevel == Integer.MAX_VALUE) {
-            return true;
+    private FieldAccessor getPrimaryKeyAccessor() throws InitializationViolationException, JDBCReflectionGeneralException {
+        RecordMetadata metadata = getMetadata();
+        String column = getPrimaryKeyColumnName();
+        if (metadata.getPrimaryKeyAccessor() == null) {
+            throw new JDBCReflectionGeneralException(new NoSuchFieldException(column));
         }
+        return metadata.getPrimaryKeyAccessor();
+    }
 
-        // Column 어노테이션이 없다면 무조건 허용
-        if (!field.isAnnotationPresent(Column.class)) {
-            return true;
-        } else {
-            Column columnAnnotation = field.getAnnotation(Column.class);
-
-            // 권한 레벨 검사
-            int[] allowedAccessLevels = columnAnnotation.allowedAccessLevels();
-            int minAccessLevel = columnAnnotation.minAccessLevel();
-
-            // 쓰기/읽기 모드에 따른 별도 권한 설정이 있다면 그것을 우선
-            if (writeMode) {
-
-                int[] wAllowedAccessLevels = columnAnnotation.writeAllowedAccessLevels();
-                int wMinAccessLevel = columnAnnotation.writeMinAccessLevel();
-
-                // 쓰기 권한이 별도로 설정되어 있다면 그것을 우선
-                if (wAllowedAccessLevels.length > 0) {
-                    allowedAccessLevels = wAllowedAccessLevels;
-                }
-                if (wMinAccessLevel > 0) {
-                    minAccessLevel = wMinAccessLevel;
-                }
-
-            } else {
-
-                int[] rAllowedAccessLevels = columnAnnotation.readAllowedAccessLevels();
-                int rMinAccessLevel = columnAnnotation.readMinAccessLevel();
-
-                // 읽기 권한이 별도로 설정되어 있다면 그것을 우선
-                if (rAllowedAccessLevels.length > 0) {
-                    allowedAccessLevels = rAllowedAccessLevels;
-                }
-                if (rMinAccessLevel > 0) {
-                    minAccessLevel = rMinAccessLevel;
-                }
-            }
-
-            // allowedAccessLevels 가 설정되어 있다면 그것이 우선
-            if (allowedAccessLevels.length > 0) {
-                boolean isAllowed = false;
-                for (int level : allowedAccessLevels) {
-                    if (privilegeLevel == level) {
-                        isAllowed = true;
-                        break;
-                    }
-                }
-                return isAllowed;
-
-            // 그렇지 않다면 minAccessLevel 검사
-            } else return privilegeLevel >= minAccessLevel;
-        }
+    public boolean mayAccessByFieldSecurityPolicy(int privilegeLevel, boolean writeMode, Field field) {
+        // 권한 체크 규칙은 AccessPolicy 참고 (클래스별로 한 번만 해석됨)
+        ColumnMetadata column = field.getDeclaringClass() == getClass() ? getMetadata().getColumnByField(field.getName()) : null;
+        AccessPolicy policy = column != null ? column.getAccessPolicy() : AccessPolicy.of(field.getAnnotation(Column.class));
+        return policy.mayAccess(privilegeLevel, writeMode);
     }
 
     public LinkedHashMap<String, String> getColumns() {
@@ -227,36 +280,21 @@ public abstract class DatabaseRecord implements RSCodable {
 
     public LinkedHashMap<String, String> getColumns(int privilegeLevel) {
         LinkedHashMap<String, String> columns = new LinkedHashMap<>();
-        for (Field field : this.getClass().getDeclaredFields()) {
-
-            // Mapping element 가 아니라면 무시
-            if (!RSCodableUtil.isMarkedMappingElement(field)) {
-                continue;
-            }
-
-            // 접근 가능하도록 설정
-            field.setAccessible(true);
-
-            // 권한 체크
-            if (!mayAccessByFieldSecurityPolicy(privilegeLevel, false, field)) {
-                continue;
-            }
+        // 권한 체크는 PrivilegeView 에서 미리 계산됨
+        for (ColumnMetadata column : getMetadata().getView(privilegeLevel).getReadableColumns()) {
+            Field field = column.getField();
 
             // CompositionObject 타입이라면 재귀적으로 분해
-            if (field.getType().isAssignableFrom(CompositionObject.class)) {
+            if (column.isComposition()) {
                 CompositionObject compositionObject;
-                try {
-                    compositionObject = (CompositionObject) field.get(this);
-                } catch (IllegalAccessException e) {
-                    throw new RuntimeException(e);
-                }
+                compositionObject = (CompositionObject) column.getAccessor().get(this);
                 compositionObject.setPrefix(field.getName());
                 HashMap<String, Object> keys = compositionObject.decompose();
                 for (String key : keys.keySet()) {
                     columns.put(key, keys.get(key).getClass().getName());
                 }
             } else {
-                columns.put(RSCodableUtil.getFieldNameInDB(field), field.getType().getName());
+                columns.put(column.getColumnName(), column.getType().getName());
             }
         }
         return columns;
@@ -267,36 +305,29 @@ public abstract class DatabaseRecord implements RSCodable {
     }
 
     public ArrayList<String> getColumnNames(int privilegeLevel) {
-        ArrayList<String> columnNames = new ArrayList<>();
-        for (Field field : this.getClass().getDeclaredFields()) {
-
-            // Mapping element 가 아니라면 무시
-            if (!RSCodableUtil.isMarkedMappingElement(field)) {
-                continue;
-            }
-
-            // 접근 가능하도록 설정
-            field.setAccessible(true);
+        PrivilegeView view = getMetadata().getView(privilegeLevel);
+        if (view.isComplete()) {
+            return new ArrayList<>(view.getReadableColumnNames());
+        }
 
-            // 권한 검사
-            if (!mayAccessByFieldSecurityPolicy(privilegeLevel, false, field)) {
-                continue;
-            }
+        ArrayList<String> columnNames = new ArrayList<>();
+        for (ColumnMetadata column : view.getReadableColumns()) {
+            Field field = column.getField();
 
             // CompositionObject 타입이라면 재귀적으로 분해
-            if (field.getType().isAssignableFrom(CompositionObject.class)) {
-                CompositionObject compositionObject;
-                try {
-                    compositionObject = (CompositionObject) field.get(this);
-                } catch (IllegalAccessException e) {
-                    throw new RuntimeException(e);
+            if (column.isComposition()) {
+                if (column.getCompositionKeys() != null) {
+                    Collections.addAll(columnNames, column.getCompositionKeys());
+                    continue;
                 }
+                CompositionObject compositionObject;
+                compositionObject = (CompositionObject) column.getAccessor().get(this);
                 compositionObject.setPrefix(field.getName());
                 String[] keys = compositionObject.compositionKeys();
                 Collections.addAll(columnNames, keys);
                 continue;
             }
-            columnNames.add(RSCodableUtil.getFieldNameInDB(field));
+            columnNames.add(column.getColumnName());
         }
         return columnNames;
     }
@@ -307,24 +338,12 @@ public abstract class DatabaseRecord implements RSCodable {
 
     public LinkedHashMap<String, Object> getValues(int privilegeLevel) throws IllegalAccessException {
         LinkedHashMap<String, Object> values = new LinkedHashMap<>();
-        for (Field field : this.getClass().getDeclaredFields()) {
-
-            // Mapping element 가 아니라면 무시
-            if (!RSCodableUtil.isMarkedMappingElement(field)) {
-                continue;
-            }
-
-            // 접근 가능하도록 설정
-            field.setAccessible(true);
-
-            // 권한 검사
-            if (!mayAccessByFieldSecurityPolicy(privilegeLevel, false, field)) {
-                continue;
-            }
+        for (ColumnMetadata column : getMetadata().getView(privilegeLevel).getReadableColumns()) {
+            Field field = column.getField();
 
             // CompositionObject 타입이라면 재귀적으로 분해
-            if (field.getType().isAssignableFrom(CompositionObject.class)) {
-                CompositionObject compositionObject = (CompositionObject) field.get(this);
+            if (column.isComposition()) {
+                CompositionObject compositionObject = (CompositionObject) column.getAccessor().get(this);
                 compositionObject.setPrefix(field.getName());
                 HashMap<String, Object> decomposed = compositionObject.decompose();
                 for (String key : decomposed.keySet()) {
@@ -332,7 +351,7 @@ public abstract class DatabaseRecord implements RSCodable {
                 }
                 continue;
             }
-            values.put(RSCodableUtil.getFieldNameInDB(field), field.get(this));
+            values.put(column.getColumnName(), column.getAccessor().get(this));
         }
         return values;
     }
@@ -340,51 +359,7 @@ public abstract class DatabaseRecord implements RSCodable {
     public static PreparedStatement setObjects(PreparedStatement preparedStatement, Object... parameters) {
         try {
             for (int i = 0; i < parameters.length; i++) {
-                int parameterIndex = i + 1;
-                Object param = parameters[i];
-                if (param == null) {
-                    preparedStatement.setNull(parameterIndex, Types.NULL);
-                } else if (param instanceof String s) {
-                    preparedStatement.setString(parameterIndex, s);
-                } else if (param instanceof Integer integer) {
-                    preparedStatement.setInt(parameterIndex, integer);
-                } else if (param instanceof Long l) {
-                    preparedStatement.setLong(parameterIndex, l);
-                } else if (param instanceof Double v) {
-                    preparedStatement.setDouble(parameterIndex, v);
-                } else if (param instanceof BigDecimal bigDecimal) {
-                    preparedStatement.setBigDecimal(parameterIndex, bigDecimal);
-                } else if (param instanceof Boolean b) {
-                    preparedStatement.setBoolean(parameterIndex, b);
-                } else if (param instanceof LocalDate localDate) {
-                    preparedStatement.setObject(parameterIndex, localDate);
-                } else if (param instanceof LocalDateTime localDateTime) {
-                    preparedStatement.setObject(parameterIndex, localDateTime);
-                } else if (param instanceof Timestamp timestamp) {
-                    preparedStatement.setTimestamp(parameterIndex, timestamp);
-                } else if (param instanceof java.sql.Date date) {
-                    preparedStatement.setDate(parameterIndex, date);
-                } else if (param instanceof List || param instanceof Map) {
-                    try {
-                        String jsonString = objectMapper.writeValueAsString(param);
-                        preparedStatement.setString(parameterIndex, jsonString);
-                    } catch (Exception e) {
-                        throw new RuntimeException("Failed to serialize object to JSON for PreparedStatement", e);
-                    }
-                } else if (param.getClass().isAssignableFrom(JsonCodable.class)) {
-                    String jsonString = ((JsonCodable) param).toJsonString();
-                    preparedStatement.setString(parameterIndex, jsonString);
-                } else if (param.getClass().isAssignableFrom(CompositionObject.class)) {
-                    try {
-                        LinkedHashMap<String, Object> decomposed = ((CompositionObject) param).decompose();
-                        String jsonString = objectMapper.writeValueAsString(decomposed);
-                        preparedStatement.setString(parameterIndex, jsonString);
-                    } catch (Exception e) {
-                        throw new RuntimeException("Failed to serialize CompositionObject to JSON for PreparedStatement", e);
-                    }
-                } else {
-                    preparedStatement.setObject(parameterIndex, param);
-                }
+                setObject(preparedStatement, i + 1, parameters[i]);
             }
         } catch (SQLException e) {
             throw new RuntimeException("Failed to set PreparedStatement parameters", e);
@@ -392,6 +367,60 @@ public abstract class DatabaseRecord implements RSCodable {
         return preparedStatement;
     }
 
+    /**
+     * Binds a single parameter with the same type mapping as {@link #setObjects(PreparedStatement, Object...)}.
+     *
+     * @param ps    The statement.
+     * @param index The 1-based parameter index.
+     * @param value The value to bind, may be null.
+     * @throws SQLException If the driver rejects the value.
+     */
+    public static void setObject(PreparedStatement ps, int index, Object value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.NULL);
+        } else if (value instanceof String s) {
+            ps.setString(index, s);
+        } else if (value instanceof Integer integer) {
+            ps.setInt(index, integer);
+        } else if (value instanceof Long l) {
+            ps.setLong(index, l);
+        } else if (value instanceof Double v) {
+            ps.setDouble(index, v);
+        } else if (value instanceof BigDecimal bigDecimal) {
+            ps.setBigDecimal(index, bigDecimal);
+        } else if (value instanceof Boolean b) {
+            ps.setBoolean(index, b);
+        } else if (value instanceof LocalDate localDate) {
+            ps.setObject(index, localDate);
+        } else if (value instanceof LocalDateTime localDateTime) {
+            ps.setObject(index, localDateTime);
+        } else if (value instanceof Timestamp timestamp) {
+            ps.setTimestamp(index, timestamp);
+        } else if (value instanceof java.sql.Date date) {
+            ps.setDate(index, date);
+        } else if (value instanceof List || value instanceof Map) {
+            try {
+                String jsonString = objectMapper.writeValueAsString(value);
+                ps.setString(index, jsonString);
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to serialize object to JSON for PreparedStatement", e);
+            }
+        } else if (value.getClass().isAssignableFrom(JsonCodable.class)) {
+            String jsonString = ((JsonCodable) value).toJsonString();
+            ps.setString(index, jsonString);
+        } else if (value.getClass().isAssignableFrom(CompositionObject.class)) {
+            try {
+                LinkedHashMap<String, Object> decomposed = ((CompositionObject) value).decompose();
+                String jsonString = objectMapper.writeValueAsString(decomposed);
+                ps.setString(index, jsonString);
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to serialize CompositionObject to JSON for PreparedStatement", e);
+            }
+        } else {
+            ps.setObject(index, value);
+        }
+    }
+
     public boolean buildTable() {
         try {
             return buildTable(false);
@@ -403,37 +432,36 @@ public abstract class DatabaseRecord implements RSCodable {
 
     public boolean buildTable(boolean useThrow) throws SQLException {
         // Get @Database annotation
-        if (!this.getClass().isAnnotationPresent(Database.class)) {
+        RecordMetadata metadata = getMetadata();
+        if (metadata.getDatabase() == null) {
             throw new RuntimeException("Database is not configured using @Database(db=...) annotation.");
         }
-        Database dbAnnotation = this.getClass().getAnnotation(Database.class);
-        String dbName = dbAnnotation.db();
-        String tableName = dbAnnotation.table();
+        String dbName = metadata.getDatabase();
+        String tableName = metadata.getTable();
         String query = "CREATE TABLE IF NOT EXISTS " + dbName + "." + tableName + " (";
         ArrayList<String> columnDefs = new ArrayList<>();
-        for (Field field : this.getClass().getDeclaredFields()) {
-            if (!RSCodableUtil.isMarkedMappingElement(field)) {
-                continue;
-            }
-            String columnName = RSCodableUtil.getFieldNameInDB(field);
-            String sqlType = RSCodableUtil.mapJavaTypeToSQLType(field.getType());
+        for (ColumnMetadata column : metadata.getColumns()) {
+            String columnName = column.getColumnName();
+            String sqlType = RSCodableUtil.mapJavaTypeToSQLType(column.getType());
             String columnDef = columnName + " " + sqlType;
-            if (this.getClass().isAnnotationPresent(PrimaryKey.class)) {
-                PrimaryKey pkAnnotation = this.getClass().getAnnotation(PrimaryKey.class);
-                if (pkAnnotation.column().equals(columnName)) {
-                    columnDef += " PRIMARY KEY";
-                }
+            if (columnName.equals(metadata.getPrimaryKeyColumnName())) {
+                columnDef += " PRIMARY KEY";
             }
-            if (field.isAnnotationPresent(Automatic.class)) {
+            if (column.isAutomatic()) {
                 columnDef += " AUTO_INCREMENT";
             }
             columnDefs.add(columnDef);
         }
 
         query += String.join(", ", columnDefs) + ");";
-        try (Connection conn = controller.getConnection(dbName); Statement stmt = conn.createStatement()) {
-            stmt.executeUpdate(query);
-            return true;
+        try {
+            Connection conn = controller.getConnection(dbName);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate(query);
+                return true;
+            } finally {
+                controller.releaseConnection(dbName, conn);
+            }
         } catch (SQLException e) {
             if (useThrow) {
                 throw e;
@@ -444,142 +472,32 @@ public abstract class DatabaseRecord implements RSCodable {
     }
 
     public void deepFetch(int privilege, int depth) {
-         // Iterate through fields with @ForeignKey or @ForeignKeyList annotation
-        for (Field field : this.getClass().getDeclaredFields()) {
-            if (field.isAnnotationPresent(ForeignKeyList.class)) {
-//                ForeignKeyList fkListAnnotation = field.getAnnotation(ForeignKeyList.class);
-//                Class<? extends DatabaseRecord> foreignClass = fkListAnnotation.type();
-//                String foreignKeyColumn = fkListAnnotation.reference();
-//                String assignTo = fkListAnnotation.assignTo();
-//
-//                // Current field is expected to have ArrayList<?> type which is list of foreign keys
-//                field.setAccessible(true);
-//                try {
-//                    Object foreignKeyListObj = field.get(this);
-//                    if (!(foreignKeyListObj instanceof ArrayList<?> foreignKeyList)) {
-//                        continue; // Skip if not an ArrayList
-//                    }
-//
-//                    // Prepare to collect fetched foreign records
-//                    ArrayList<DatabaseRecord> fetchedRecords = new ArrayList<>();
-//
-//                    // For each foreign key, fetch the corresponding record
-//                    for (Object foreignKeyValue : foreignKeyList) {
-//                        DatabaseRecord foreignRecordInstance = foreignClass.getDeclaredConstructor(DatabaseTableService.class)
-//                                .newInstance(this.controller);
-//
-//                        // Set the foreign key value to the appropriate field
-//                        Field foreignField = foreignClass.getDeclaredField(foreignKeyColumn);
-//                        foreignField.setAccessible(true);
-//                        foreignField.set(foreignRecordInstance, foreignKeyValue);
-//                        // Fetch the full foreign record
-//                        foreignRecordInstance.select(privilege);
-//                        // If depth > 1, recursively deep fetch
-//                        if (depth > 1) {
-//                            foreignRecordInstance.deepFetch(privilege, depth - 1);
-//                        }
-//                        fetchedRecords.add(foreignRecordInstance);
-//                    }
-//                    // Assign fetched records to the designated field
-//                    if (!assignTo.isEmpty()) {
-//                        Field assignField = this.getClass().getDeclaredField(assignTo);
-//                        assignField.setAccessible(true);
-//                    }
-//                } catch (Exception e) {
-//                    throw new RuntimeException(e);
-//                }
-                ForeignKeyList fkListAnnotation = field.getAnnotation(ForeignKeyList.class);
-                Class<? extends DatabaseRecord> foreignClass = fkListAnnotation.type();
-                String foreignKeyColumn = fkListAnnotation.reference();
-                String assignTo = fkListAnnotation.assignTo();
-
-                field.setAccessible(true);
-                try {
-                    Object foreignKeyListObj = field.get(this);
-                    if (!(foreignKeyListObj instanceof ArrayList<?> foreignKeyList) || foreignKeyList.isEmpty()) {
-                        continue;
-                    }
-
-                    // 1. Prepare the Search Expressions (Batching)
-                    // detailed: Construct "WHERE foreignKeyColumn IN (?,?,?)"
-                    SearchExpression[] expressions = new SearchExpression[1];
-                    expressions[0] = new SearchExpression()
-                            .column(foreignKeyColumn)
-                            .in(foreignKeyList.toArray());
-
-                    // 2. Execute ONE Query for all items
-                    DatabaseRecord blueprint = foreignClass.getDeclaredConstructor().newInstance();
-
-                    // Pass -1 (or 0) as limit to ensure we fetch all matches
-                    LinkedHashMap<Object, DatabaseRecord> results = this.controller.searchBy(
-                            privilege,
-                            blueprint,
-                            0,
-                            -1,
-                            expressions
-                    );
-
-                    ArrayList<DatabaseRecord> fetchedRecords = new ArrayList<>(results.values());
-
-                    // 3. Handle Recursive Deep Fetch
-                    if (depth > 1) {
-                        for (DatabaseRecord rec : fetchedRecords) {
-                            rec.deepFetch(privilege, depth - 1);
-                        }
-                    }
-
-                    // 4. Assign to the target field
-                    if (!assignTo.isEmpty()) {
-                        Field assignField = this.getClass().getDeclaredField(assignTo);
-                        assignField.setAccessible(true);
-
-                        // Overwrite the list with the fully fetched collection
-                        // (Assuming target field is ArrayList as per original code constraints)
-                        assignField.set(this, fetchedRecords);
-                    }
-
-                } catch (Exception e) {
-                    throw new RuntimeException("Failed during optimized deepFetch", e);
-                }
+        deepFetchAll(List.of(this), privilege, depth);
+    }
 
-            } else if (field.isAnnotationPresent(ForeignKey.class)) {
-                ForeignKey fkAnnotation = field.getAnnotation(ForeignKey.class);
-                Class<? extends DatabaseRecord> foreignClass = fkAnnotation.type();
-                String foreignKeyColumn = fkAnnotation.reference();
-                String assignTo = fkAnnotation.assignTo();
-
-                // Current field is expected to have the foreign key value
-                field.setAccessible(true);
-                try {
-                    Object foreignKeyValue = field.get(this);
-                    if (foreignKeyValue == null) {
-                        continue; // Skip if foreign key value is null
-                    }
+    /**
+     * Fetches the foreign references of many records at once, level by level, down to the given depth.
+     * Each level costs one query per referenced type instead of one per parent.
+     *
+     * @param records   The records to fetch the references of.
+     * @param privilege The privilege used to fetch the referenced records.
+     * @param depth     The number of levels to fetch.
+     */
+    public static void deepFetchAll(Collection<? extends DatabaseRecord> records, int privilege, int depth) {
+        deepFetchAll(records, privilege, depth, false);
+    }
 
-                    // Create an instance of the foreign record
-                    DatabaseRecord foreignRecordInstance = foreignClass.getDeclaredConstructor(DatabaseTableService.class)
-                            .newInstance(this.controller);
-
-                    // Set the foreign key value to the appropriate field
-                    Field foreignField = foreignClass.getDeclaredField(foreignKeyColumn);
-                    foreignField.setAccessible(true);
-                    foreignField.set(foreignRecordInstance, foreignKeyValue);
-                    // Fetch the full foreign record
-                    foreignRecordInstance.select(privilege);
-                    // If depth > 1, recursively deep fetch
-                    if (depth > 1) {
-                        foreignRecordInstance.deepFetch(privilege, depth - 1);
-                    }
-                    // Assign fetched record to the designated field
-                    if (!assignTo.isEmpty()) {
-                        Field assignField = this.getClass().getDeclaredField(assignTo);
-                        assignField.setAccessible(true);
-                        assignField.set(this, foreignRecordInstance);
-                    }
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
-            }
+    /**
+     * @param concurrent Whether the queries for different referenced types of one level run concurrently.
+     * @see #deepFetchAll(Collection, int, int)
+     */
+    public static void deepFetchAll(Collection<? extends DatabaseRecord> records, int privilege, int depth, boolean concurrent) {
+        try {
+            ForeignKeyResolver.deepFetch(privilege, records, depth, concurrent);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed during deepFetch", e);
         }
     }
 
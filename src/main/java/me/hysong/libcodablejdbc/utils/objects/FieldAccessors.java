@@ -0,0 +1,33 @@
+package me.hysong.libcodablejdbc.utils.objects;
+
+import me.hysong.libcodablejdbc.utils.interfaces.FieldAccessor;
+import me.hysong.libcodablejdbc.utils.interfaces.FieldAccessorFactory;
+
+import java.lang.reflect.Field;
+
+/**
+ * Entry point of the field accessor layer.
+ * <p>
+ * Accessors are bound once per field when a class's {@link RecordMetadata} is built, so a custom
+ * factory has to be installed before the first record of a class is used.
+ */
+public class FieldAccessors {
+    private static volatile FieldAccessorFactory factory = FieldAccessors::methodHandleOrReflection;
+
+    public static FieldAccessor create(Field field) {
+        return factory.create(field);
+    }
+
+    public static void setFactory(FieldAccessorFactory factory) {
+        FieldAccessors.factory = factory;
+    }
+
+    private static FieldAccessor methodHandleOrReflection(Field field) {
+        field.setAccessible(true);
+        try {
+            return new MethodHandleFieldAccessor(field);
+        } catch (IllegalAccessException e) {
+            return new ReflectionFieldAccessor(field);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package me.hysong.libcodablejdbc.utils.objects;
+
+import lombok.Getter;
+import me.hysong.libcodablejdbc.ForeignKey;
+import me.hysong.libcodablejdbc.utils.interfaces.FieldAccessor;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * A LEFT JOIN loading the record referenced by a {@link ForeignKey} field in the same query as its parent.
+ * <p>
+ * The parent table is aliased {@link #PARENT_ALIAS}, each joined table gets its own alias, and the columns
+ * of a joined table are selected with a label prefix derived from the {@code assignTo} field, so the parent
+ * and the referenced record are both hydrated from the same row. Composition fields of the referenced
+ * record, and columns the privilege may not read, are not joined; referenced records missing some columns
+ * this way are not registered in the {@link RecordSession}.
+ */
+public final class ForeignKeyJoin {
+    public static final String PARENT_ALIAS = "t0";
+
+    @Getter private final ColumnMetadata column;
+    @Getter private final RecordMetadata target;
+    @Getter private final String alias;
+    @Getter private final String prefix;
+    private final List<String> targetColumns;
+
+    private ForeignKeyJoin(ColumnMetadata column, RecordMetadata target, String alias, List<String> targetColumns) {
+        this.column = column;
+        this.target = target;
+        this.alias = alias;
+        this.prefix = column.getForeignKey().assignTo() + "__";
+        this.targetColumns = targetColumns;
+    }
+
+    /**
+     * Lists the joins of a record class: one per readable {@link ForeignKey} column with an {@code assignTo}
+     * field, whose referenced class has a table and whose referenced column the privilege may read. The
+     * other references are left to the batched resolution after hydration.
+     *
+     * @param metadata  The parent record class.
+     * @param privilege The privilege level, applied to both the parent and the referenced columns.
+     * @return The joins, empty if there is none.
+     */
+    public static List<ForeignKeyJoin> of(RecordMetadata metadata, int privilege) {
+        PrivilegeView view = metadata.getView(privilege);
+        ArrayList<ForeignKeyJoin> joins = new ArrayList<>();
+        for (ColumnMetadata column : metadata.getForeignReferences()) {
+            ForeignKey fk = column.getForeignKey();
+            if (fk == null || fk.assignTo() == null || fk.assignTo().isEmpty() || !view.mayRead(column)) {
+                continue;
+            }
+            RecordMetadata target = RecordMetadata.of(fk.type());
+            ColumnMetadata reference = target.getColumn(fk.reference());
+            // 참조 컬럼을 읽을 수 없으면 선택 목록에 없으므로 조인하지 않음
+            if (target.getTable() == null || reference == null || !target.getView(privilege).mayRead(reference)) {
+                continue;
+            }
+            ArrayList<String> targetColumns = new ArrayList<>();
+            for (ColumnMetadata targetColumn : target.getView(privilege).getReadableColumns()) {
+                if (!targetColumn.isComposition()) {
+                    targetColumns.add(targetColumn.getColumnName());
+                }
+            }
+            joins.add(new ForeignKeyJoin(column, target, "j" + (joins.size() + 1), targetColumns));
+        }
+        return joins;
+    }
+
+    /**
+     * Appends the select list and the FROM clause of a query on the parent table with the given joins,
+     * e.g. {@code t0.*, j1.name AS customer__name FROM orders t0 LEFT JOIN customers j1 ON j1.id = t0.customer_id}.
+     *
+     * @param sb       The statement being built, ending with {@code "SELECT "}.
+     * @param database The database of the parent table, used to qualify joined tables of other databases.
+     * @param table    The parent table.
+     * @param joins    The joins.
+     */
+    public static void appendFrom(StringBuilder sb, String database, String table, List<ForeignKeyJoin> joins) {
+        appendFrom(sb, database, table, joins, null);
+    }
+
+    /**
+     * Appends the select list and the FROM clause of a query on the parent table with the given joins,
+     * selecting only the given columns of the parent table.
+     *
+     * @param parentColumns The selected columns of the parent table, null for all of them.
+     * @see #appendFrom(StringBuilder, String, String, List)
+     */
+    public static void appendFrom(StringBuilder sb, String database, String table, List<ForeignKeyJoin> joins, List<String> parentColumns) {
+        if (parentColumns == null) {
+            sb.append(PARENT_ALIAS).append(".*");
+        } else {
+            for (int i = 0; i < parentColumns.size(); i++) {
+                sb.append(i > 0 ? ", " : "").append(PARENT_ALIAS).append('.').append(parentColumns.get(i));
+            }
+        }
+        for (ForeignKeyJoin join : joins) {
+            for (String targetColumn : join.targetColumns) {
+                sb.append(", ").append(join.alias).append('.').append(targetColumn)
+                        .append(" AS ").append(join.prefix).append(targetColumn);
+            }
+        }
+        sb.append(" FROM ").append(table).append(' ').append(PARENT_ALIAS);
+        for (ForeignKeyJoin join : joins) {
+            sb.append(" LEFT JOIN ");
+            if (join.target.getDatabase() != null && !join.target.getDatabase().equals(database)) {
+                sb.append(join.target.getDatabase()).append('.');
+            }
+            sb.append(join.target.getTable()).append(' ').append(join.alias)
+                    .append(" ON ").append(join.alias).append('.').append(join.column.getForeignKey().reference())
+                    .append(" = ").append(PARENT_ALIAS).append('.').append(join.column.getColumnName());
+        }
+    }
+
+    /**
+     * Plans the decoding of the joined columns of a result set.
+     *
+     * @param rs The result set of a query built with {@link #appendFrom(StringBuilder, String, String, List)}.
+     * @return The decoder of this join for the result set.
+     * @throws SQLException If the result set metadata cannot be read.
+     */
+    public Decoder decoder(ResultSet rs) throws SQLException {
+        String reference = column.getForeignKey().reference();
+        // 일부 컬럼만 읽은 레코드는 세션에 넣지 않음
+        boolean complete = targetColumns.size() == target.getColumns().size();
+        return new Decoder(RowDecoderPlan.of(target, rs, prefix), rs.findColumn(prefix + reference),
+                column.getForeignKey().assignTo(), reference.equals(target.getPrimaryKeyColumnName()),
+                complete ? RecordSession.current() : null);
+    }
+
+    /**
+     * Hydrates the referenced records of one join for one result set. Parents referencing the same key
+     * share the referenced instance.
+     */
+    public static final class Decoder {
+        @Getter private final RowDecoderPlan plan;
+        private final int referenceIndex;
+        private final String assignTo;
+        private final boolean referencesPrimaryKey;
+        private final RecordSession session;
+        private final HashMap<Object, DatabaseRecord> decoded = new HashMap<>();
+        private final ArrayList<DatabaseRecord> loaded = new ArrayList<>();
+
+        private Decoder(RowDecoderPlan plan, int referenceIndex, String assignTo, boolean referencesPrimaryKey, RecordSession session) {
+            this.plan = plan;
+            this.referenceIndex = referenceIndex;
+            this.assignTo = assignTo;
+            this.referencesPrimaryKey = referencesPrimaryKey;
+            this.session = session;
+        }
+
+        /**
+         * Decodes the referenced record of the current row, if any, and assigns it to the parent.
+         *
+         * @param rs     The result set, positioned on a row.
+         * @param parent The parent record hydrated from the same row.
+         */
+        public void decode(ResultSet rs, DatabaseRecord parent) throws SQLException, ReflectiveOperationException {
+            // LEFT JOIN 에서 대응하는 행이 없으면 참조 컬럼이 NULL
+            Object key = rs.getObject(referenceIndex);
+            if (key == null) {
+                return;
+            }
+            key = ForeignKeyResolver.normalizeKey(key);
+            DatabaseRecord referenced = decoded.get(key);
+            if (referenced == null && session != null && referencesPrimaryKey) {
+                referenced = session.get(plan.getMetadata().getRecordClass(), key);
+            }
+            if (referenced == null) {
+                DatabaseRecord fresh = (DatabaseRecord) plan.getMetadata().newInstance();
+                plan.decode(rs, fresh);
+                fresh.snapshotState();
+                referenced = session == null ? fresh : session.register(fresh);
+                if (referenced == fresh) {
+                    loaded.add(fresh);
+                }
+            }
+            decoded.put(key, referenced);
+
+            FieldAccessor assignAccessor = parent.getMetadata().getAccessor(assignTo);
+            if (assignAccessor == null) {
+                throw new NoSuchFieldException(assignTo);
+            }
+            assignAccessor.set(parent, referenced);
+        }
+
+        /**
+         * @return The distinct referenced records decoded so far, excluding those already loaded in the session.
+         */
+        public List<DatabaseRecord> getDecoded() {
+            return loaded;
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package me.hysong.libcodablejdbc.utils.objects;
+
+import me.hysong.libcodablejdbc.ForeignKey;
+import me.hysong.libcodablejdbc.ForeignKeyList;
+import me.hysong.libcodablejdbc.utils.interfaces.DatabaseTableService;
+import me.hysong.libcodablejdbc.utils.interfaces.FieldAccessor;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Fetches the {@code alwaysFetch} references of many records at once.
+ * <p>
+ * For each {@link ForeignKey} column, the key values of all records are collected, de-duplicated and
+ * fetched with chunked {@code IN} queries, then the referenced records are assigned back to every
+ * record's {@code assignTo} field. A result of N rows thus costs one query per foreign key (per chunk)
+ * instead of N. Records sharing a key share the fetched instance.
+ * <p>
+ * {@link ForeignKeyList} columns work the same way: the id arrays of all records are merged into one
+ * key set, and each record's {@code assignTo} list receives the fetched records in its own id order.
+ * <p>
+ * {@link #deepFetch(int, Collection, int, boolean)} applies the same batching level by level to walk the
+ * relation graph of many records.
+ */
+public class ForeignKeyResolver {
+    public static final int CHUNK_SIZE = 1000;
+
+    /**
+     * Resolves the foreign references of the given records, all of the same class.
+     * A failing reference is reported and skipped, it does not prevent resolving the others.
+     *
+     * @param privilege         The privilege used to fetch the referenced records.
+     * @param records           The hydrated records.
+     * @param foreignReferences The foreign reference columns to resolve, e.g. those present in the result set.
+     */
+    public static void resolve(int privilege, List<? extends DatabaseRecord> records, List<ColumnMetadata> foreignReferences) {
+        if (records.isEmpty()) {
+            return;
+        }
+        RecordMetadata metadata = records.getFirst().getMetadata();
+        for (ColumnMetadata column : foreignReferences) {
+            // Fetch failure should not block main assignment
+            try {
+                if (column.getForeignKey() != null) {
+                    resolveForeignKey(privilege, records, metadata, column);
+                } else if (column.getForeignKeyList() != null) {
+                    resolveForeignKeyList(privilege, records, metadata, column);
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static void resolveForeignKey(int privilege, List<? extends DatabaseRecord> records, RecordMetadata metadata, ColumnMetadata column) throws Exception {
+        ForeignKey fk = column.getForeignKey();
+        if (!fk.alwaysFetch() || fk.assignTo() == null || fk.assignTo().isEmpty()) {
+            return;
+        }
+        FieldAccessor assignAccessor = metadata.getAccessor(fk.assignTo());
+        if (assignAccessor == null) {
+            throw new NoSuchFieldException(fk.assignTo());
+        }
+
+        LinkedHashSet<Object> keys = new LinkedHashSet<>();
+        for (DatabaseRecord record : records) {
+            Object value = column.getAccessor().get(record);
+            if (value != null) {
+                keys.add(normalizeKey(value));
+            }
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        Map<Object, DatabaseRecord> fetched = fetchByReference(privilege, records.getFirst().getController(), fk.type(), fk.reference(), keys);
+        for (DatabaseRecord record : records) {
+            Object value = column.getAccessor().get(record);
+            DatabaseRecord referenced = value == null ? null : fetched.get(normalizeKey(value));
+            if (referenced != null) {
+                assignAccessor.set(record, referenced);
+            }
+        }
+    }
+
+    private static void resolveForeignKeyList(int privilege, List<? extends DatabaseRecord> records, RecordMetadata metadata, ColumnMetadata column) throws Exception {
+        ForeignKeyList fkl = column.getForeignKeyList();
+        if (!fkl.alwaysFetch() || fkl.assignTo() == null || fkl.assignTo().isEmpty()) {
+            return;
+        }
+        FieldAccessor assignAccessor = metadata.getAccessor(fkl.assignTo());
+        if (assignAccessor == null) {
+            throw new NoSuchFieldException(fkl.assignTo());
+        }
+
+        // 모든 행의 ID 를 합쳐 한 번에 조회
+        ArrayList<List<Object>> idsPerRecord = new ArrayList<>(records.size());
+        LinkedHashSet<Object> keys = new LinkedHashSet<>();
+        for (DatabaseRecord record : records) {
+            Object value = column.getAccessor().get(record);
+            List<Object> ids = value == null ? List.of() : idList(value);
+            idsPerRecord.add(ids);
+            for (Object id : ids) {
+                if (id != null) {
+                    keys.add(normalizeKey(id));
+                }
+            }
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        Map<Object, DatabaseRecord> fetched = fetchByReference(privilege, records.getFirst().getController(), fkl.type(), fkl.reference(), keys);
+        for (int i = 0; i < records.size(); i++) {
+            DatabaseRecord record = records.get(i);
+            List<Object> ids = idsPerRecord.get(i);
+            if (ids.isEmpty()) {
+                continue;
+            }
+            ArrayList<Object> list = assignedList(assignAccessor, record);
+            for (Object id : ids) {
+                DatabaseRecord referenced = id == null ? null : fetched.get(normalizeKey(id));
+                if (referenced != null) {
+                    list.add(referenced);
+                }
+            }
+        }
+    }
+
+    /**
+     * A referenced record type and the column its records are looked up by.
+     */
+    private record Target(Class<? extends DatabaseRecord> type, String reference) {
+    }
+
+    /**
+     * A foreign reference column of one record class, and the records of that class on the current level.
+     */
+    private record Relation(RecordMetadata metadata, ColumnMetadata column, List<DatabaseRecord> records) {
+    }
+
+    /**
+     * Fetches the references of the given records, then those of the fetched records, down to the given depth,
+     * regardless of {@code alwaysFetch}. The relation graph is walked breadth-first: each level costs one batched
+     * query per referenced type and reference column, whatever the number of parents, and relations sharing a
+     * target are merged into the same query.
+     *
+     * @param privilege  The privilege used to fetch the referenced records.
+     * @param records    The records to start from; they may be of different classes.
+     * @param depth      The number of levels to fetch.
+     * @param concurrent Whether the queries of one level run concurrently, on virtual threads.
+     *                   Each running query holds its own connection.
+     */
+    public static void deepFetch(int privilege, Collection<? extends DatabaseRecord> records, int depth, boolean concurrent) throws Exception {
+        List<DatabaseRecord> level = new ArrayList<>(records);
+        for (int d = 0; d < depth && !level.isEmpty(); d++) {
+            ArrayList<Callable<Collection<DatabaseRecord>>> tasks = new ArrayList<>();
+            for (Map.Entry<Target, List<Relation>> entry : relationsByTarget(level).entrySet()) {
+                tasks.add(() -> fetchTarget(privilege, entry.getKey(), entry.getValue()));
+            }
+
+            // 다음 단계는 이번에 가져온 레코드들 (중복 제거)
+            Set<DatabaseRecord> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+            ArrayList<DatabaseRecord> next = new ArrayList<>();
+            for (Collection<DatabaseRecord> fetched : run(tasks, concurrent)) {
+                for (DatabaseRecord record : fetched) {
+                    if (seen.add(record)) {
+                        next.add(record);
+                    }
+                }
+            }
+            level = next;
+        }
+    }
+
+    private static LinkedHashMap<Target, List<Relation>> relationsByTarget(List<DatabaseRecord> level) {
+        LinkedHashMap<Class<?>, List<DatabaseRecord>> byClass = new LinkedHashMap<>();
+        for (DatabaseRecord record : level) {
+            byClass.computeIfAbsent(record.getClass(), k -> new ArrayList<>()).add(record);
+        }
+
+        LinkedHashMap<Target, List<Relation>> targets = new LinkedHashMap<>();
+        for (List<DatabaseRecord> group : byClass.values()) {
+            RecordMetadata metadata = group.getFirst().getMetadata();
+            for (ColumnMetadata column : metadata.getForeignReferences()) {
+                Target target;
+                String assignTo;
+                if (column.getForeignKey() != null) {
+                    target = new Target(column.getForeignKey().type(), column.getForeignKey().reference());
+                    assignTo = column.getForeignKey().assignTo();
+                } else {
+                    target = new Target(column.getForeignKeyList().type(), column.getForeignKeyList().reference());
+                    assignTo = column.getForeignKeyList().assignTo();
+                }
+                // 할당할 필드가 없으면 가져와도 쓸 곳이 없음
+                if (assignTo == null || assignTo.isEmpty()) {
+                    continue;
+                }
+                targets.computeIfAbsent(target, k -> new ArrayList<>()).add(new Relation(metadata, column, group));
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * Fetches every key of the relations sharing a target with one chunked query, and assigns the results.
+     *
+     * @return The fetched records.
+     */
+    private static Collection<DatabaseRecord> fetchTarget(int privilege, Target target, List<Relation> relations) throws Exception {
+        LinkedHashSet<Object> keys = new LinkedHashSet<>();
+        for (Relation relation : relations) {
+            boolean list = relation.column().getForeignKeyList() != null;
+            for (DatabaseRecord record : relation.records()) {
+                Object value = relation.column().getAccessor().get(record);
+                if (value == null) {
+                    continue;
+                }
+                for (Object id : list ? idList(value) : List.of(value)) {
+                    if (id != null) {
+                        keys.add(normalizeKey(id));
+                    }
+                }
+            }
+        }
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+
+        DatabaseTableService controller = relations.getFirst().records().getFirst().getController();
+        Map<Object, DatabaseRecord> fetched = fetchByReference(privilege, controller, target.type(), target.reference(), keys);
+
+        for (Relation relation : relations) {
+            ColumnMetadata column = relation.column();
+            boolean list = column.getForeignKeyList() != null;
+            String assignTo = list ? column.getForeignKeyList().assignTo() : column.getForeignKey().assignTo();
+            FieldAccessor assignAccessor = relation.metadata().getAccessor(assignTo);
+            if (assignAccessor == null) {
+                throw new NoSuchFieldException(assignTo);
+            }
+
+            for (DatabaseRecord record : relation.records()) {
+                Object value = column.getAccessor().get(record);
+                if (value == null) {
+                    continue;
+                }
+                if (list) {
+                    // 원래 ID 순서대로 목록을 새로 만들어 덮어씀
+                    ArrayList<DatabaseRecord> referenced = new ArrayList<>();
+                    for (Object id : idList(value)) {
+                        DatabaseRecord r = id == null ? null : fetched.get(normalizeKey(id));
+                        if (r != null) {
+                            referenced.add(r);
+                        }
+                    }
+                    assignAccessor.set(record, referenced);
+                } else {
+                    DatabaseRecord referenced = fetched.get(normalizeKey(value));
+                    if (referenced != null) {
+                        assignAccessor.set(record, referenced);
+                    }
+                }
+            }
+        }
+        return fetched.values();
+    }
+
+    static <V> List<V> run(List<? extends Callable<V>> tasks, boolean concurrent) throws Exception {
+        ArrayList<V> results = new ArrayList<>(tasks.size());
+        if (!concurrent || tasks.size() < 2) {
+            for (Callable<V> task : tasks) {
+                results.add(task.call());
+            }
+            return results;
+        }
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            ArrayList<Callable<V>> propagated = new ArrayList<>(tasks.size());
+            for (Callable<V> task : tasks) {
+                propagated.add(RecordSession.propagate(task));
+            }
+            for (Future<V> future : executor.invokeAll(propagated)) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception cause) {
+                        throw cause;
+                    }
+                    throw e;
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Reads the ids of a {@link ForeignKeyList} column value, in order.
+     */
+    static List<Object> idList(Object value) {
+        ArrayList<Object> ids = new ArrayList<>();
+        switch (value) {
+            case Collection<?> collection -> ids.addAll(collection);
+            case Object[] objects -> ids.addAll(Arrays.asList(objects));
+            case int[] ints -> {
+                for (int id : ints) {
+                    ids.add(id);
+                }
+            }
+            case long[] longs -> {
+                for (long id : longs) {
+                    ids.add(id);
+                }
+            }
+            default -> throw new IllegalArgumentException("ForeignKeyList field value is not an array type.");
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the {@code assignTo} list of a record, creating it if the field is null.
+     */
+    @SuppressWarnings("unchecked")
+    private static ArrayList<Object> assignedList(FieldAccessor assignAccessor, DatabaseRecord record) {
+        Object currentCollection = assignAccessor.get(record);
+        if (currentCollection == null) {
+            try {
+                currentCollection = new ArrayList<>();
+                assignAccessor.set(record, currentCollection);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("ForeignKeyList assignTo field is not an ArrayList.", e);
+            }
+        }
+        if (currentCollection instanceof ArrayList<?> list) {
+            return (ArrayList<Object>) list;
+        }
+        throw new IllegalArgumentException("ForeignKeyList assignTo field is not an ArrayList.");
+    }
+
+    /**
+     * Fetches the records of a type whose reference column matches any of the given keys.
+     *
+     * @return The fetched records by normalized reference value.
+     */
+    static Map<Object, DatabaseRecord> fetchByReference(int privilege, DatabaseTableService controller, Class<? extends DatabaseRecord> type,
+                                                        String referenceColumn, Collection<Object> keys) throws Exception {
+        RecordMetadata metadata = RecordMetadata.of(type);
+        ColumnMetadata reference = metadata.getColumn(referenceColumn);
+        if (reference == null) {
+            throw new NoSuchFieldException(type.getName() + "." + referenceColumn);
+        }
+
+        HashMap<Object, DatabaseRecord> byReference = new HashMap<>();
+        RecordSession session = RecordSession.current();
+        if (session != null && referenceColumn.equals(metadata.getPrimaryKeyColumnName())) {
+            // 세션에 이미 있는 레코드는 조회하지 않음
+            ArrayList<Object> missing = new ArrayList<>();
+            for (Object key : keys) {
+                DatabaseRecord loaded = session.get(type, key);
+                if (loaded != null) {
+                    byReference.put(key, loaded);
+                } else {
+                    missing.add(key);
+                }
+            }
+            if (missing.isEmpty()) {
+                return byReference;
+            }
+            keys = missing;
+        }
+
+        DatabaseRecord blueprint = type.getDeclaredConstructor(DatabaseTableService.class).newInstance(controller);
+        ArrayList<Object> chunk = new ArrayList<>(Math.min(keys.size(), CHUNK_SIZE));
+        Iterator<Object> iterator = keys.iterator();
+        while (iterator.hasNext()) {
+            chunk.add(iterator.next());
+            if (chunk.size() == CHUNK_SIZE || !iterator.hasNext()) {
+                SearchExpression[] expressions = {new SearchExpression().column(referenceColumn).in(chunk.toArray())};
+                LinkedHashMap<Object, DatabaseRecord> result = controller.searchBy(privilege, blueprint, 0, 0, expressions);
+                if (result != null) {
+                    for (DatabaseRecord record : result.values()) {
+                        Object value = reference.getAccessor().get(record);
+                        if (value != null) {
+                            byReference.putIfAbsent(normalizeKey(value), record);
+                        }
+                    }
+                }
+                chunk.clear();
+            }
+        }
+        return byReference;
+    }
+
+    /**
+     * Makes key values read from different column types comparable, e.g. an {@code int} foreign key
+     * and the {@code long} primary key it references.
+     */
+    static Object normalizeKey(Object value) {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,197 @@
+package me.hysong.libcodablejdbc.utils.objects;
+
+import me.hysong.libcodablejdbc.utils.interfaces.FieldAccessor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * {@link FieldAccessor} backed by method handles unreflected once from an accessible field.
+ * Primitive fields additionally get exact-typed handles so the primitive setters never box.
+ */
+public final class MethodHandleFieldAccessor implements FieldAccessor {
+    private final Field field;
+    private final Class<?> type;
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+    private final MethodHandle primitiveGetter;
+    private final MethodHandle primitiveSetter;
+
+    public MethodHandleFieldAccessor(Field field) throws IllegalAccessException {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle rawGetter = lookup.unreflectGetter(field);
+        MethodHandle rawSetter = lookup.unreflectSetter(field);
+
+        this.field = field;
+        this.type = field.getType();
+        this.getter = rawGetter.asType(MethodType.methodType(Object.class, Object.class));
+        this.setter = rawSetter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+        if (type.isPrimitive()) {
+            this.primitiveGetter = rawGetter.asType(MethodType.methodType(type, Object.class));
+            this.primitiveSetter = rawSetter.asType(MethodType.methodType(void.class, Object.class, type));
+        } else {
+            this.primitiveGetter = null;
+            this.primitiveSetter = null;
+        }
+    }
+
+    @Override
+    public Object get(Object target) {
+        try {
+            return (Object) getter.invokeExact(target);
+        } catch (Throwable t) {
+            throw failure(t, null);
+        }
+    }
+
+    @Override
+    public void set(Object target, Object value) {
+        try {
+            setter.invokeExact(target, value);
+        } catch (Throwable t) {
+            throw failure(t, value);
+        }
+    }
+
+    @Override
+    public int getInt(Object target) {
+        if (type != int.class) {
+            return FieldAccessor.super.getInt(target);
+        }
+        try {
+            return (int) primitiveGetter.invokeExact(target);
+        } catch (Throwable t) {
+            throw failure(t, null);
+        }
+    }
+
+    @Override
+    public void setInt(Object target, int value) {
+        if (type != int.class) {
+            set(target, value);
+            return;
+        }
+        try {
+            primitiveSetter.invokeExact(target, value);
+        } catch (Throwable t) {
+            throw failure(t, value);
+        }
+    }
+
+    @Override
+    public long getLong(Object target) {
+        if (type != long.class) {
+            return FieldAccessor.super.getLong(target);
+        }
+        try {
+            return (long) primitiveGetter.invokeExact(target);
+        } catch (Throwable t) {
+            throw failure(t, null);
+        }
+    }
+
+    @Override
+    public void setLong(Object target, long value) {
+        if (type != long.class) {
+            set(target, value);
+            return;
+        }
+        try {
+            primitiveSetter.invokeExact(target, value);
+        } catch (Throwable t) {
+            throw failure(t, value);
+        }
+    }
+
+    @Override
+    public double getDouble(Object target) {
+        if (type != double.class) {
+            return FieldAccessor.super.getDouble(target);
+        }
+        try {
+            return (double) primitiveGetter.invokeExact(target);
+        } catch (Throwable t) {
+            throw failure(t, null);
+        }
+    }
+
+    @Override
+    public void setDouble(Object target, double value) {
+        if (type != double.class) {
+            set(target, value);
+            return;
+        }
+        try {
+            primitiveSetter.invokeExact(target, value);
+        } catch (Throwable t) {
+            throw failure(t, value);
+        }
+    }
+
+    @Override
+    public void setFloat(Object target, float value) {
+        if (type != float.class) {
+            set(target, value);
+            return;
+        }
+        try {
+            primitiveSetter.invokeExact(target, value);
+        } catch (Throwable t) {
+            throw failure(t, value);
+        }
+    }
+
+    @Override
+    public void setShort(Object target, short value) {
+        if (type != short.class) {
+            set(target, value);
+            return;
+        }
+        try {
+            primitiveSetter.invokeExact(target, value);
+        } catch (Throwable t) {
+            throw failure(t, value);
+        }
+    }
+
+    @Override
+    public void setByte(Object target, byte value) {
+        if (type != byte.class) {
+            set(target, value);
+            return;
+        }
+        try {
+            primitiveSetter.invokeExact(target, value);
+        } catch (Throwable t) {
+            throw failure(t, value);
+        }
+    }
+
+    @Override
+    public void setBoolean(Object target, boolean value) {
+        if (type != boolean.class) {
+            set(target, value);
+            return;
+        }
+        try {
+            primitiveSetter.invokeExact(target, value);
+        } catch (Throwable t) {
+            throw failure(t, value);
+        }
+    }
+
+    private RuntimeException failure(Throwable t, Object value) {
+        if (t instanceof ClassCastException || t instanceof NullPointerException) {
+            return new IllegalArgumentException("Can not set " + field + " to " + value, t);
+        }
+        if (t instanceof RuntimeException e) {
+            return e;
+        }
+        if (t instanceof Error e) {
+            throw e;
+        }
+        return new RuntimeException(t);
+    }
+}
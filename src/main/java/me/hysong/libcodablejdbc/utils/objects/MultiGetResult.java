@@ -0,0 +1,127 @@
+package me.hysong.libcodablejdbc.utils.objects;
+
+import lombok.Getter;
+import me.hysong.libcodablejdbc.utils.exceptions.InitializationViolationException;
+import me.hysong.libcodablejdbc.utils.exceptions.JDBCReflectionGeneralException;
+import me.hysong.libcodablejdbc.utils.interfaces.DatabaseTableService;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Records loaded by {@link DatabaseTableService#getAll(Class, Collection, int)}, in the order of the requested
+ * primary keys, and the keys no record was found for.
+ *
+ * @param <T> The record class.
+ */
+public final class MultiGetResult<T extends DatabaseRecord> {
+    @Getter private final LinkedHashMap<Object, T> records;
+    @Getter private final List<Object> missingKeys;
+
+    private MultiGetResult(LinkedHashMap<Object, T> records, List<Object> missingKeys) {
+        this.records = records;
+        this.missingKeys = missingKeys;
+    }
+
+    /**
+     * @param primaryKey A requested primary key, as it was passed.
+     * @return The record, or null if it is missing.
+     */
+    public T get(Object primaryKey) {
+        return records.get(primaryKey);
+    }
+
+    /**
+     * @return Whether a record was found for every requested key.
+     */
+    public boolean isComplete() {
+        return missingKeys.isEmpty();
+    }
+
+    /**
+     * Loads the records of the given primary keys with one IN query per chunk of keys, running the chunks
+     * concurrently on virtual threads, at most {@link AsyncExecutor#getMaxConcurrency()} of the service at once
+     * within this call.
+     *
+     * @param controller  The table service.
+     * @param recordClass The record class.
+     * @param primaryKeys The primary keys; duplicates and nulls are dropped.
+     * @param privilege   The privilege level the records are read with.
+     * @param chunkSize   The maximum number of keys per query.
+     * @return The records in key order and the missing keys.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends DatabaseRecord> MultiGetResult<T> fetch(DatabaseTableService controller, Class<T> recordClass, Collection<?> primaryKeys,
+                                                                     int privilege, int chunkSize) throws SQLException, IOException, InitializationViolationException, JDBCReflectionGeneralException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        RecordMetadata metadata = RecordMetadata.of(recordClass);
+        if (metadata.getPrimaryKeyColumnName() == null) {
+            throw new IllegalArgumentException("No primary key on " + recordClass.getName());
+        }
+
+        // 정규화한 키 기준으로 중복 제거, 첫 등장 순서 유지
+        LinkedHashMap<Object, Object> requested = new LinkedHashMap<>();
+        for (Object key : primaryKeys) {
+            if (key != null) {
+                requested.putIfAbsent(ForeignKeyResolver.normalizeKey(key), key);
+            }
+        }
+
+        // 블루프린트는 클래스 정보만 쓰이고 쿼리는 넘겨받은 컨트롤러로 실행함
+        DatabaseRecord blueprint;
+        try {
+            blueprint = (DatabaseRecord) metadata.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new JDBCReflectionGeneralException("Failed to instantiate " + recordClass.getName(), e);
+        }
+        String primaryKeyColumn = metadata.getPrimaryKeyColumnName();
+        Semaphore parallelism = new Semaphore(controller.getAsyncExecutor().getMaxConcurrency());
+        ArrayList<Callable<LinkedHashMap<Object, DatabaseRecord>>> tasks = new ArrayList<>();
+        ArrayList<Object> keys = new ArrayList<>(requested.values());
+        for (int from = 0; from < keys.size(); from += chunkSize) {
+            Object[] chunk = keys.subList(from, Math.min(from + chunkSize, keys.size())).toArray();
+            tasks.add(() -> {
+                parallelism.acquire();
+                try {
+                    SearchExpression[] expressions = {new SearchExpression().column(primaryKeyColumn).in(chunk)};
+                    return controller.searchBy(privilege, blueprint, 0, 0, expressions);
+                } finally {
+                    parallelism.release();
+                }
+            });
+        }
+
+        HashMap<Object, DatabaseRecord> found = new HashMap<>();
+        try {
+            for (LinkedHashMap<Object, DatabaseRecord> result : ForeignKeyResolver.run(tasks, true)) {
+                if (result == null) {
+                    continue;
+                }
+                for (DatabaseRecord record : result.values()) {
+                    found.put(ForeignKeyResolver.normalizeKey(metadata.getPrimaryKeyAccessor().get(record)), record);
+                }
+            }
+        } catch (SQLException | IOException | InitializationViolationException | JDBCReflectionGeneralException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to fetch " + recordClass.getName() + " by primary key", e);
+        }
+
+        LinkedHashMap<Object, T> records = new LinkedHashMap<>();
+        ArrayList<Object> missing = new ArrayList<>();
+        for (Map.Entry<Object, Object> key : requested.entrySet()) {
+            DatabaseRecord record = found.get(key.getKey());
+            if (record == null) {
+                missing.add(key.getValue());
+            } else {
+                records.put(key.getValue(), (T) record);
+            }
+        }
+        return new MultiGetResult<>(records, missing);
+    }
+}
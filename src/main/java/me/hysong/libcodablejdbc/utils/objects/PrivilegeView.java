@@ -0,0 +1,99 @@
+package me.hysong.libcodablejdbc.utils.objects;
+
+import lombok.Getter;
+
+import java.util.*;
+
+/**
+ * The columns of a record class a privilege level may read and write, compiled once per
+ * (class, privilege) by {@link RecordMetadata#getView(int)}.
+ * <p>
+ * Read and write permissions are bitsets indexed by {@link ColumnMetadata#getIndex()}, and the readable
+ * database column names (composition keys included) form a set, so privilege filtering and column
+ * validation are membership checks. The readable column names also make up the projection of the
+ * generated queries, so columns a privilege may not read are not transferred. Records loaded with a
+ * {@link #isNarrowed() narrowed} projection leave those fields unset and bypass the {@link RecordSession}.
+ */
+public final class PrivilegeView {
+    @Getter private final int privilege;
+    @Getter private final List<ColumnMetadata> readableColumns;
+    @Getter private final Set<String> readableColumnNames;
+    /**
+     * The columns queries select for this privilege, or null if they select every column because a readable
+     * composition field's column names are only known to its composition object.
+     */
+    @Getter private final List<String> projection;
+    private final BitSet readable;
+    private final BitSet writable;
+    private final boolean complete;
+    private final boolean narrowed;
+
+    PrivilegeView(RecordMetadata metadata, int privilege) {
+        this.privilege = privilege;
+        List<ColumnMetadata> columns = metadata.getColumns();
+        this.readable = new BitSet(columns.size());
+        this.writable = new BitSet(columns.size());
+
+        ArrayList<ColumnMetadata> readableColumns = new ArrayList<>();
+        LinkedHashSet<String> readableColumnNames = new LinkedHashSet<>();
+        ArrayList<String> projection = new ArrayList<>();
+        boolean projectable = true;
+        boolean complete = true;
+        for (ColumnMetadata column : columns) {
+            if (column.getAccessPolicy().mayWrite(privilege)) {
+                writable.set(column.getIndex());
+            }
+            if (!column.getAccessPolicy().mayRead(privilege)) {
+                continue;
+            }
+            readable.set(column.getIndex());
+            readableColumns.add(column);
+            if (!column.isComposition()) {
+                readableColumnNames.add(column.getColumnName());
+                projection.add(column.getColumnName());
+                continue;
+            }
+            projectable = false;
+            if (column.getCompositionKeys() != null) {
+                Collections.addAll(readableColumnNames, column.getCompositionKeys());
+            } else {
+                // Keys only known from an instance
+                complete = false;
+            }
+        }
+        this.readableColumns = Collections.unmodifiableList(readableColumns);
+        this.readableColumnNames = Collections.unmodifiableSet(readableColumnNames);
+        // 결과는 기본키로 식별되므로 읽기 권한과 무관하게 항상 선택
+        String primaryKey = metadata.getPrimaryKeyColumnName();
+        if (primaryKey != null && !projection.contains(primaryKey)) {
+            projection.addFirst(primaryKey);
+        }
+        this.projection = projectable ? List.copyOf(projection) : null;
+        this.complete = complete;
+        this.narrowed = projectable && projection.size() < columns.size();
+    }
+
+    public boolean mayRead(ColumnMetadata column) {
+        return readable.get(column.getIndex());
+    }
+
+    public boolean mayWrite(ColumnMetadata column) {
+        return writable.get(column.getIndex());
+    }
+
+    /**
+     * @return Whether {@link #getProjection()} leaves out columns the privilege may not read, so the records
+     * it loads are partly unset.
+     */
+    public boolean isNarrowed() {
+        return narrowed;
+    }
+
+    /**
+     * @return Whether {@link #getReadableColumnNames()} lists every readable column, i.e. no readable
+     * composition field needs an instance to know its keys.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+}
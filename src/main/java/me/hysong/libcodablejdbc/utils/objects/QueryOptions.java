@@ -0,0 +1,172 @@
+package me.hysong.libcodablejdbc.utils.objects;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Optional behavior of the select and search methods of a table service.
+ */
+@Getter
+public class QueryOptions {
+
+    /**
+     * One column of an ORDER BY.
+     */
+    public record Order(String column, boolean descending) {
+    }
+
+    private boolean joinForeignKeys = false;
+    private final List<Order> orderBy = new ArrayList<>();
+    private boolean keyset = false;
+    private String continuationToken;
+    private List<String> columns;
+    private Predicate<ColumnMetadata> columnFilter;
+
+    /**
+     * Loads the records referenced by {@code @ForeignKey} fields with an {@code assignTo} in the same query,
+     * with one LEFT JOIN per foreign key, instead of fetching them with separate queries after hydration.
+     */
+    public QueryOptions joinForeignKeys() {
+        this.joinForeignKeys = true;
+        return this;
+    }
+
+    /**
+     * Selects only the given columns, among those the privilege may read, instead of every readable column.
+     * The primary key, and the sort columns of a keyset query, are always selected.
+     * <p>
+     * Records loaded with a narrowed projection are left partly unset: they bypass the {@link RecordSession}
+     * so they never stand in for a fully loaded record, and {@code update} leaves their unselected columns alone
+     * as long as their fields are not assigned.
+     *
+     * @param columns The database column names.
+     */
+    public QueryOptions columns(String... columns) {
+        this.columns = List.of(columns);
+        return this;
+    }
+
+    /**
+     * Selects only the readable columns accepted by a filter, e.g. {@code column -> column.getType() != byte[].class}
+     * to leave out BLOBs. Combined with {@link #columns(String...)}, a column must pass both.
+     *
+     * @see #columns(String...)
+     */
+    public QueryOptions columns(Predicate<ColumnMetadata> columnFilter) {
+        this.columnFilter = columnFilter;
+        return this;
+    }
+
+    /**
+     * @return Whether the options narrow the projection of the query.
+     */
+    public boolean isProjected() {
+        return columns != null || columnFilter != null;
+    }
+
+    /**
+     * Sorts the result by a column, ascending. Call again to add columns to the sort.
+     */
+    public QueryOptions orderBy(String column) {
+        return orderBy(column, false);
+    }
+
+    /**
+     * Sorts the result by a column. Call again to add columns to the sort.
+     */
+    public QueryOptions orderBy(String column, boolean descending) {
+        orderBy.add(new Order(column, descending));
+        return this;
+    }
+
+    /**
+     * Pages with keyset (seek) pagination instead of OFFSET: the query continues after the row a token
+     * points at, with {@code WHERE (sort columns, primary key) > (?, ?)}, so with an index on the sort
+     * columns every page costs as much as the first. The offset argument of the query is ignored.
+     * <p>
+     * The primary key is added to the sort as a tie breaker. All sort columns must have the same direction
+     * and should not be nullable, since rows with NULL sort values never compare greater.
+     *
+     * @param continuationToken The token of the previous page from {@link #nextToken(Map)}, null for the first page.
+     */
+    public QueryOptions keyset(String continuationToken) {
+        this.keyset = true;
+        this.continuationToken = continuationToken;
+        return this;
+    }
+
+    /**
+     * @param metadata The queried record class.
+     * @return The sort of a keyset query: the sort columns followed by the primary key.
+     */
+    public List<Order> keysetOrder(RecordMetadata metadata) {
+        String primaryKey = metadata.getPrimaryKeyColumnName();
+        if (primaryKey == null) {
+            throw new IllegalArgumentException("Keyset pagination needs a primary key on " + metadata.getRecordClass().getName());
+        }
+        boolean descending = !orderBy.isEmpty() && orderBy.getFirst().descending();
+        ArrayList<Order> order = new ArrayList<>();
+        for (Order o : orderBy) {
+            if (o.descending() != descending) {
+                throw new IllegalArgumentException("Keyset pagination needs all sort columns in the same direction");
+            }
+            order.add(o);
+            if (o.column().equals(primaryKey)) {
+                // 기본키 뒤의 정렬 컬럼은 순서에 영향이 없음
+                return order;
+            }
+        }
+        order.add(new Order(primaryKey, descending));
+        return order;
+    }
+
+    /**
+     * @param metadata The queried record class.
+     * @return The values of the continuation token for the keyset sort, or null on the first page.
+     */
+    public Object[] seekValues(RecordMetadata metadata) {
+        if (!keyset || continuationToken == null) {
+            return null;
+        }
+        return ContinuationToken.decode(continuationToken, columnsOf(keysetOrder(metadata)));
+    }
+
+    /**
+     * Builds the token of the page following a keyset page, to pass to {@link #keyset(String)} of the next query.
+     *
+     * @param page The records of the page, in query order.
+     * @return The token pointing after the last record, or null if the page is empty.
+     */
+    public String nextToken(Map<Object, ? extends DatabaseRecord> page) {
+        DatabaseRecord last = null;
+        for (DatabaseRecord record : page.values()) {
+            last = record;
+        }
+        if (last == null) {
+            return null;
+        }
+        RecordMetadata metadata = last.getMetadata();
+        List<String> columns = columnsOf(keysetOrder(metadata));
+        Object[] values = new Object[columns.size()];
+        for (int i = 0; i < values.length; i++) {
+            ColumnMetadata column = metadata.getColumn(columns.get(i));
+            if (column == null) {
+                throw new IllegalArgumentException("Column " + columns.get(i) + " not found in " + metadata.getRecordClass().getName());
+            }
+            values[i] = column.getAccessor().get(last);
+        }
+        return ContinuationToken.encode(columns, values);
+    }
+
+    private static List<String> columnsOf(List<Order> order) {
+        ArrayList<String> columns = new ArrayList<>(order.size());
+        for (Order o : order) {
+            columns.add(o.column());
+        }
+        return columns;
+    }
+}
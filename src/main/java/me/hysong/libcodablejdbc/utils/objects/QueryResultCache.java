@@ -0,0 +1,256 @@
+package me.hysong.libcodablejdbc.utils.objects;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of {@code searchBy} results, served by
+ * {@link me.hysong.libcodablejdbc.utils.interfaces.DatabaseTableService#getQueryResultCache()}.
+ * <p>
+ * Results are keyed by record class, privilege, paging and a canonical form of the search expressions:
+ * values are normalized like primary keys and IN lists are sorted and de-duplicated, so equivalent
+ * searches share an entry. Each table has a generation counter bumped by {@link #invalidate(String)},
+ * which the template write methods call for the written tables. An entry remembers the generations of
+ * every table its records were read from (the searched table and those of its foreign references) and is
+ * stale as soon as one of them moves, or when it is older than the staleness bound. The least recently
+ * used entries are dropped beyond the size bound.
+ * <p>
+ * Like {@link RecordCache}, entries hold copies and every hit returns fresh shallow copies.
+ */
+public class QueryResultCache {
+
+    private record Key(Class<?> recordClass, int privilege, int offset, int limit, boolean joined, List<?> variant, List<Object> expressions) {
+    }
+
+    private record Entry(LinkedHashMap<Object, DatabaseRecord> result, List<String> tables, long[] generations, long loadedAt) {
+    }
+
+    /**
+     * The tables the records of a class are read from: its own and, transitively, those of its references.
+     */
+    private static final ClassValue<List<String>> TABLES = new ClassValue<>() {
+        @Override
+        protected List<String> computeValue(Class<?> type) {
+            LinkedHashSet<String> tables = new LinkedHashSet<>();
+            ArrayDeque<Class<?>> pending = new ArrayDeque<>(List.of(type));
+            HashSet<Class<?>> seen = new HashSet<>();
+            while (!pending.isEmpty()) {
+                Class<?> current = pending.poll();
+                if (!seen.add(current)) {
+                    continue;
+                }
+                RecordMetadata metadata = RecordMetadata.of(current);
+                if (metadata.getTable() != null) {
+                    tables.add(tableName(metadata));
+                }
+                for (ColumnMetadata column : metadata.getForeignReferences()) {
+                    pending.add(column.getForeignKey() != null ? column.getForeignKey().type() : column.getForeignKeyList().type());
+                }
+            }
+            return List.copyOf(tables);
+        }
+    };
+
+    private final int maxSize;
+    private final long maxStalenessNanos;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<String, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxSize      The maximum number of cached results.
+     * @param maxStaleness How long a result may be served, even if no write went through the library.
+     */
+    public QueryResultCache(int maxSize, Duration maxStaleness) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.maxStalenessNanos = maxStaleness.toNanos();
+    }
+
+    /**
+     * Builds the canonical key of a search.
+     *
+     * @param joined Whether the referenced records are loaded with joins.
+     * @return The key, to pass to {@link #snapshot(Class)}, {@link #get(Object)} and {@link #put(Object, Snapshot, LinkedHashMap)}.
+     */
+    public static Object keyOf(Class<?> recordClass, int privilege, int offset, int limit, boolean joined, SearchExpression[] expressions) {
+        return keyOf(recordClass, privilege, offset, limit, joined, List.of(), expressions);
+    }
+
+    /**
+     * Builds the canonical key of a sorted, keyset-paged or projected search.
+     *
+     * @param variant The sort, paging and projection options of the search, compared with {@code equals}.
+     * @see #keyOf(Class, int, int, int, boolean, SearchExpression[])
+     */
+    public static Object keyOf(Class<?> recordClass, int privilege, int offset, int limit, boolean joined, List<?> variant, SearchExpression[] expressions) {
+        ArrayList<Object> canonical = new ArrayList<>(expressions.length);
+        for (SearchExpression exp : expressions) {
+            Object in = exp.getIn() == null || exp.getIn().length == 0 ? List.of() : canonicalIn(exp.getIn());
+            canonical.add(Arrays.asList(exp.getColumn(), exp.isNegate(), exp.isStartsWith(), exp.isEndsWith(),
+                    exp.isAnd(), exp.isOr(), ForeignKeyResolver.normalizeKey(exp.getValue()), in));
+        }
+        return new Key(recordClass, privilege, Math.max(offset, 0), Math.max(limit, 0), joined, variant, canonical);
+    }
+
+    /**
+     * IN lists are sets: order and repetitions do not change the matched rows.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static List<Object> canonicalIn(Object[] in) {
+        ArrayList<Object> values = new ArrayList<>(in.length);
+        Class<?> type = null;
+        boolean sortable = true;
+        for (Object value : in) {
+            Object normalized = ForeignKeyResolver.normalizeKey(value);
+            values.add(normalized);
+            if (normalized == null || !(normalized instanceof Comparable) || (type != null && type != normalized.getClass())) {
+                sortable = false;
+            } else {
+                type = normalized.getClass();
+            }
+        }
+        if (sortable) {
+            return List.copyOf(new TreeSet(values));
+        }
+        return new ArrayList<>(new LinkedHashSet<>(values));
+    }
+
+    /**
+     * The table generations a result is about to be read at; take it before running the query, so a write
+     * racing with the query leaves the stored result already stale.
+     */
+    public static final class Snapshot {
+        private final List<String> tables;
+        private final long[] generations;
+
+        private Snapshot(List<String> tables, long[] generations) {
+            this.tables = tables;
+            this.generations = generations;
+        }
+    }
+
+    /**
+     * @param recordClass The record class being searched.
+     * @return The current generations of the tables the class is read from.
+     */
+    public Snapshot snapshot(Class<?> recordClass) {
+        List<String> tables = TABLES.get(recordClass);
+        long[] current = new long[tables.size()];
+        for (int i = 0; i < current.length; i++) {
+            current[i] = generationOf(tables.get(i)).get();
+        }
+        return new Snapshot(tables, current);
+    }
+
+    /**
+     * @param key The key built by {@link #keyOf}.
+     * @return Copies of the cached records, or null on a miss or if the entry is stale.
+     */
+    public LinkedHashMap<Object, DatabaseRecord> get(Object key) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry == null || !isFresh(entry)) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return copyOf(entry.result());
+    }
+
+    /**
+     * Stores a result read at the given snapshot.
+     */
+    public void put(Object key, Snapshot snapshot, LinkedHashMap<Object, DatabaseRecord> result) {
+        if (result == null) {
+            return;
+        }
+        Entry entry = new Entry(copyOf(result), snapshot.tables, snapshot.generations, System.nanoTime());
+        synchronized (entries) {
+            entries.put((Key) key, entry);
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (entries.size() > maxSize && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Marks every cached result read from the table as stale.
+     *
+     * @param table The table, qualified with its database like {@link #tableName(RecordMetadata)}.
+     */
+    public void invalidate(String table) {
+        generationOf(table).incrementAndGet();
+    }
+
+    /**
+     * Marks every cached result read from the table of a record class as stale.
+     */
+    public void invalidate(Class<?> recordClass) {
+        RecordMetadata metadata = RecordMetadata.of(recordClass);
+        if (metadata.getTable() != null) {
+            invalidate(tableName(metadata));
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The name a table is invalidated by: {@code database.table}, or the table alone without a database.
+     */
+    public static String tableName(RecordMetadata metadata) {
+        return metadata.getDatabase() == null ? metadata.getTable() : metadata.getDatabase() + "." + metadata.getTable();
+    }
+
+    private boolean isFresh(Entry entry) {
+        if (System.nanoTime() - entry.loadedAt() > maxStalenessNanos) {
+            return false;
+        }
+        for (int i = 0; i < entry.generations().length; i++) {
+            if (generationOf(entry.tables().get(i)).get() != entry.generations()[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private AtomicLong generationOf(String table) {
+        return generations.computeIfAbsent(table, k -> new AtomicLong());
+    }
+
+    private static LinkedHashMap<Object, DatabaseRecord> copyOf(LinkedHashMap<Object, DatabaseRecord> result) {
+        LinkedHashMap<Object, DatabaseRecord> copy = new LinkedHashMap<>();
+        for (Map.Entry<Object, DatabaseRecord> e : result.entrySet()) {
+            copy.put(e.getKey(), RecordCache.copyOf(e.getValue()));
+        }
+        return copy;
+    }
+}
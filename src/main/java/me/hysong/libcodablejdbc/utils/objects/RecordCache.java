@@ -0,0 +1,326 @@
+package me.hysong.libcodablejdbc.utils.objects;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Second-level cache of records loaded by primary key, served by
+ * {@link me.hysong.libcodablejdbc.utils.interfaces.DatabaseTableService#getRecordCache()}.
+ * <p>
+ * Only the record classes registered with {@link #cache(Class, int, Duration)} are cached, each in its own
+ * bounded region. A region is split into segments by key hash, each a segmented LRU: new entries go to a
+ * probation segment and are promoted to a protected segment on their second hit, so a scan of one-off keys
+ * cannot flush the frequently read ones. Entries expire after the region's TTL, and missing keys are
+ * remembered for the negative TTL.
+ * <p>
+ * The cache stores a copy of each loaded record and hands out a fresh copy on every hit, so callers may
+ * modify what they get. Copies are shallow: referenced records are shared. Writes through the template
+ * methods invalidate the written keys; writes with raw SQL must call {@link #invalidate(Class, Object)}.
+ * <p>
+ * Invalidation bumps a generation counter of the key's stripe. Readers take {@link #generation(Class, Object)}
+ * before querying and pass it to {@link #put}, which drops the result if the key was invalidated meanwhile,
+ * so a row read before a racing write is never cached after it.
+ */
+public class RecordCache {
+    private static final int SEGMENTS = 16;
+    private static final int GENERATION_STRIPES = 64;
+    private static final Object MISSING = new Object();
+
+    private record Key(int privilege, Object primaryKey) {
+    }
+
+    private record Entry(Object value, long expiresAt) {
+    }
+
+    /**
+     * Segmented LRU of one hash segment of a region.
+     */
+    private static final class Segment {
+        private final LinkedHashMap<Key, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<Key, Entry> protectedEntries = new LinkedHashMap<>(16, 0.75f, true);
+        // 키 해시별 무효화 세대, 조회 전후로 바뀌었으면 저장하지 않음
+        private final long[] generations = new long[GENERATION_STRIPES];
+        private final int capacity;
+        private final int protectedCapacity;
+
+        private Segment(int capacity) {
+            this.capacity = capacity;
+            this.protectedCapacity = Math.max(1, capacity * 4 / 5);
+        }
+
+        private synchronized Entry get(Key key, long now) {
+            Entry entry = protectedEntries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt() - now <= 0) {
+                    protectedEntries.remove(key);
+                    return null;
+                }
+                return entry;
+            }
+            entry = probation.remove(key);
+            if (entry == null || entry.expiresAt() - now <= 0) {
+                return null;
+            }
+            // 두 번째 조회부터는 보호 구간으로 승격
+            protectedEntries.put(key, entry);
+            if (protectedEntries.size() > protectedCapacity) {
+                Iterator<Map.Entry<Key, Entry>> eldest = protectedEntries.entrySet().iterator();
+                Map.Entry<Key, Entry> demoted = eldest.next();
+                eldest.remove();
+                probation.put(demoted.getKey(), demoted.getValue());
+            }
+            return entry;
+        }
+
+        private synchronized long generation(Object primaryKey) {
+            return generations[stripeOf(primaryKey)];
+        }
+
+        /**
+         * @param generation The generation of the key when its value was read.
+         * @return The number of entries evicted to make room.
+         */
+        private synchronized int put(Key key, Entry entry, long generation) {
+            if (generations[stripeOf(key.primaryKey())] != generation) {
+                // 읽은 뒤에 무효화됨
+                return 0;
+            }
+            protectedEntries.remove(key);
+            probation.put(key, entry);
+            int evicted = 0;
+            while (probation.size() + protectedEntries.size() > capacity) {
+                LinkedHashMap<Key, Entry> victims = probation.isEmpty() ? protectedEntries : probation;
+                Iterator<Key> eldest = victims.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+                evicted++;
+            }
+            return evicted;
+        }
+
+        private synchronized void invalidate(Object primaryKey, Set<Integer> privileges) {
+            generations[stripeOf(primaryKey)]++;
+            for (int privilege : privileges) {
+                Key key = new Key(privilege, primaryKey);
+                probation.remove(key);
+                protectedEntries.remove(key);
+            }
+        }
+
+        private synchronized int size() {
+            return probation.size() + protectedEntries.size();
+        }
+
+        private synchronized void clear() {
+            for (int i = 0; i < generations.length; i++) {
+                generations[i]++;
+            }
+            probation.clear();
+            protectedEntries.clear();
+        }
+
+        private static int stripeOf(Object primaryKey) {
+            int h = primaryKey.hashCode();
+            return (h ^ (h >>> 7)) & (GENERATION_STRIPES - 1);
+        }
+    }
+
+    private static final class Region {
+        private final Segment[] segments;
+        private final long ttlNanos;
+        private final long negativeTtlNanos;
+        private final Set<Integer> privileges = ConcurrentHashMap.newKeySet();
+
+        private Region(int maxSize, Duration ttl, Duration negativeTtl) {
+            int count = Math.min(SEGMENTS, maxSize);
+            this.segments = new Segment[count];
+            for (int i = 0; i < count; i++) {
+                segments[i] = new Segment((maxSize + count - 1) / count);
+            }
+            this.ttlNanos = ttl.toNanos();
+            this.negativeTtlNanos = negativeTtl.toNanos();
+        }
+
+        private Segment segmentOf(Object primaryKey) {
+            int h = primaryKey.hashCode();
+            return segments[Math.floorMod(h ^ (h >>> 16), segments.length)];
+        }
+    }
+
+    private final ConcurrentHashMap<Class<?>, Region> regions = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Caches the records of a class, remembering missing keys as long as present ones.
+     *
+     * @see #cache(Class, int, Duration, Duration)
+     */
+    public RecordCache cache(Class<? extends DatabaseRecord> recordClass, int maxSize, Duration ttl) {
+        return cache(recordClass, maxSize, ttl, ttl);
+    }
+
+    /**
+     * Caches the records of a class. Registering a class again replaces its region and drops its entries.
+     *
+     * @param recordClass The record class.
+     * @param maxSize     The maximum number of cached keys of the class, per privilege level.
+     * @param ttl         How long a loaded record is served from the cache.
+     * @param negativeTtl How long a missing key is remembered, {@link Duration#ZERO} to not remember it.
+     */
+    public RecordCache cache(Class<? extends DatabaseRecord> recordClass, int maxSize, Duration ttl, Duration negativeTtl) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+        }
+        regions.put(recordClass, new Region(maxSize, ttl, negativeTtl));
+        return this;
+    }
+
+    public boolean isCached(Class<?> recordClass) {
+        return regions.containsKey(recordClass);
+    }
+
+    /**
+     * Looks up the record with the given primary key.
+     *
+     * @param recordClass The record class.
+     * @param privilege   The privilege level the record is read with.
+     * @param primaryKey  The primary key value.
+     * @return A copy of the cached record, an empty map if the key is known to be missing, or null on a miss
+     * or if the class is not cached.
+     */
+    public LinkedHashMap<Object, DatabaseRecord> get(Class<?> recordClass, int privilege, Object primaryKey) {
+        Region region = regions.get(recordClass);
+        if (region == null || primaryKey == null) {
+            return null;
+        }
+        Object normalized = ForeignKeyResolver.normalizeKey(primaryKey);
+        Entry entry = region.segmentOf(normalized).get(new Key(privilege, normalized), System.nanoTime());
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        LinkedHashMap<Object, DatabaseRecord> result = new LinkedHashMap<>();
+        if (entry.value() != MISSING) {
+            DatabaseRecord copy = copyOf((DatabaseRecord) entry.value());
+            result.put(primaryKey, copy);
+        }
+        return result;
+    }
+
+    /**
+     * The invalidation generation of a key, to take before reading the record from the database.
+     *
+     * @return The generation to pass to {@link #put}, 0 if the class is not cached.
+     */
+    public long generation(Class<?> recordClass, Object primaryKey) {
+        Region region = regions.get(recordClass);
+        if (region == null || primaryKey == null) {
+            return 0;
+        }
+        Object normalized = ForeignKeyResolver.normalizeKey(primaryKey);
+        return region.segmentOf(normalized).generation(normalized);
+    }
+
+    /**
+     * Stores the result of loading a record by primary key. Does nothing if the class is not cached, or if
+     * the key was invalidated since the generation was taken.
+     *
+     * @param recordClass The record class.
+     * @param privilege   The privilege level the record was read with.
+     * @param primaryKey  The primary key value.
+     * @param result      The loaded records; an empty result caches the key as missing.
+     * @param generation  The {@link #generation(Class, Object)} of the key taken before the read.
+     */
+    public void put(Class<?> recordClass, int privilege, Object primaryKey, Map<Object, DatabaseRecord> result, long generation) {
+        Region region = regions.get(recordClass);
+        if (region == null || primaryKey == null || result == null) {
+            return;
+        }
+        Object value;
+        long ttl;
+        if (result.isEmpty()) {
+            if (region.negativeTtlNanos <= 0) {
+                return;
+            }
+            value = MISSING;
+            ttl = region.negativeTtlNanos;
+        } else {
+            value = copyOf(result.values().iterator().next());
+            ttl = region.ttlNanos;
+        }
+        Object normalized = ForeignKeyResolver.normalizeKey(primaryKey);
+        region.privileges.add(privilege);
+        int evicted = region.segmentOf(normalized).put(new Key(privilege, normalized), new Entry(value, System.nanoTime() + ttl), generation);
+        if (evicted > 0) {
+            evictions.add(evicted);
+        }
+    }
+
+    /**
+     * Drops the cached record with the given primary key, for every privilege level.
+     */
+    public void invalidate(Class<?> recordClass, Object primaryKey) {
+        Region region = regions.get(recordClass);
+        if (region == null || primaryKey == null) {
+            return;
+        }
+        Object normalized = ForeignKeyResolver.normalizeKey(primaryKey);
+        region.segmentOf(normalized).invalidate(normalized, region.privileges);
+    }
+
+    /**
+     * Drops every cached record of a class.
+     */
+    public void invalidateAll(Class<?> recordClass) {
+        Region region = regions.get(recordClass);
+        if (region != null) {
+            for (Segment segment : region.segments) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * @return The number of cached keys of a class, expired ones included until they are looked up or evicted.
+     */
+    public int size(Class<?> recordClass) {
+        Region region = regions.get(recordClass);
+        if (region == null) {
+            return 0;
+        }
+        int size = 0;
+        for (Segment segment : region.segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    static DatabaseRecord copyOf(DatabaseRecord record) {
+        RecordMetadata metadata = record.getMetadata();
+        try {
+            DatabaseRecord copy = (DatabaseRecord) metadata.newInstance();
+            metadata.copyState(record, copy);
+            copy.copySnapshot(record);
+            return copy;
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Failed to copy cached " + record.getClass().getName(), e);
+        }
+    }
+}
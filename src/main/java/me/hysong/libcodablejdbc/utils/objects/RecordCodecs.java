@@ -0,0 +1,63 @@
+package me.hysong.libcodablejdbc.utils.objects;
+
+import me.hysong.libcodablejdbc.utils.interfaces.ColumnReader;
+import me.hysong.libcodablejdbc.utils.interfaces.RecordCodec;
+
+/**
+ * Looks up the generated {@link RecordCodec} of a record class.
+ * <p>
+ * Codecs are generated by the libcodablejdbc annotation processor next to the record class. Classes
+ * compiled without the processor have no codec and keep using the reflective accessors. Codecs can be
+ * switched off entirely with {@code -Dlibcodablejdbc.codecs=false}.
+ */
+public class RecordCodecs {
+    public static final String SUFFIX = "$$RecordCodec";
+
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("libcodablejdbc.codecs"));
+
+    private static final ClassValue<RecordCodec<?>> CACHE = new ClassValue<>() {
+        @Override
+        protected RecordCodec<?> computeValue(Class<?> type) {
+            return load(type);
+        }
+    };
+
+    /**
+     * @param recordClass The record class.
+     * @return The generated codec of the class, or null if there is none.
+     */
+    public static RecordCodec<?> of(Class<?> recordClass) {
+        return ENABLED ? CACHE.get(recordClass) : null;
+    }
+
+    private static RecordCodec<?> load(Class<?> recordClass) {
+        try {
+            Class<?> codecClass = Class.forName(recordClass.getName() + SUFFIX, true, recordClass.getClassLoader());
+            RecordCodec<?> codec = (RecordCodec<?>) codecClass.getDeclaredConstructor().newInstance();
+            return codec.recordClass() == recordClass ? codec : null;
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+            // A broken codec must not make the record unusable; the reflective path still works
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Called by generated codecs for columns whose type they do not decode themselves.
+     *
+     * @param recordClass The record class.
+     * @param columns     The codec columns.
+     * @return The runtime reader of every codec column, null where the codec decodes the column itself.
+     */
+    public static ColumnReader[] delegateReaders(Class<?> recordClass, String[] columns) {
+        RecordMetadata metadata = RecordMetadata.of(recordClass);
+        ColumnReader[] readers = new ColumnReader[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            ColumnMetadata column = metadata.getColumn(columns[i]);
+            readers[i] = column == null ? null : column.getReader();
+        }
+        return readers;
+    }
+}
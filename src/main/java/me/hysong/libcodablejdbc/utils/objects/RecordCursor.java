@@ -0,0 +1,121 @@
+package me.hysong.libcodablejdbc.utils.objects;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazily hydrating iterator over an open result set.
+ * <p>
+ * Each call to {@link #next()} decodes the current row into a new record, so memory use does not depend
+ * on the size of the result. The cursor owns its statement and result set: it closes them when the last
+ * row has been read, and {@link #close()} must be called when iteration stops early.
+ * <p>
+ * Cursors do not fetch the records of {@code @ForeignKey}/{@code @ForeignKeyList} fields: a query per row
+ * would bring back the N+1 pattern, and a streaming result set keeps its connection busy until it is closed.
+ * Resolve them afterwards, e.g. with {@link DatabaseRecord#deepFetchAll} on a batch of read records.
+ *
+ * @param <T> The record class.
+ */
+public class RecordCursor<T extends DatabaseRecord> implements Iterator<T>, AutoCloseable {
+    private final int privilege;
+    private final Statement statement;
+    private final ResultSet rs;
+    private final RowDecoderPlan plan;
+    private final AutoCloseable onClose;
+    private boolean ready = false;
+    private boolean closed = false;
+
+    public RecordCursor(int privilege, Statement statement, ResultSet rs, RowDecoderPlan plan) {
+        this(privilege, statement, rs, plan, null);
+    }
+
+    /**
+     * @param onClose Run after the statement is closed, e.g. to give the connection back to its pool.
+     */
+    public RecordCursor(int privilege, Statement statement, ResultSet rs, RowDecoderPlan plan, AutoCloseable onClose) {
+        this.privilege = privilege;
+        this.statement = statement;
+        this.rs = rs;
+        this.plan = plan;
+        this.onClose = onClose;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (!ready) {
+            try {
+                ready = rs.next();
+            } catch (SQLException e) {
+                close();
+                throw new RuntimeException("Failed to advance ResultSet", e);
+            }
+            if (!ready) {
+                close();
+            }
+        }
+        return ready;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        ready = false;
+        T record;
+        try {
+            record = (T) plan.getMetadata().newInstance();
+        } catch (ReflectiveOperationException e) {
+            close();
+            throw new RuntimeException("Expected a public, no-parameter constructor for class " + plan.getMetadata().getRecordClass().getName(), e);
+        }
+        record.objectifyCurrentRow(privilege, rs, plan, false);
+        return record;
+    }
+
+    /**
+     * @return A sequential stream over the remaining rows; closing the stream closes this cursor.
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            try {
+                rs.close();
+            } finally {
+                try {
+                    statement.close();
+                } finally {
+                    if (onClose != null) {
+                        onClose.close();
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to close ResultSet", e);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package me.hysong.libcodablejdbc.utils.objects;
+
+import lombok.Getter;
+import me.hysong.libcodablejdbc.Database;
+import me.hysong.libcodablejdbc.PrimaryKey;
+import me.hysong.libcodablejdbc.RSCodableUtil;
+import me.hysong.libcodablejdbc.utils.interfaces.FieldAccessor;
+import me.hysong.libcodablejdbc.utils.interfaces.RecordCodec;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable, lazily built mapping model of a record class.
+ * <p>
+ * The model is computed once per class (backed by a {@link ClassValue}) and holds everything the
+ * hydration, value extraction and SQL-building paths used to re-read through reflection on every call:
+ * table and database names, the primary key field, and the ordered list of mapped columns with their
+ * {@code @Automatic}, {@code @PseudoEnum}, {@code @ForeignKey} and composition information.
+ */
+public final class RecordMetadata {
+
+    static final int MAX_CACHED_VIEWS = 64;
+
+    private static final ClassValue<RecordMetadata> CACHE = new ClassValue<>() {
+        @Override
+        protected RecordMetadata computeValue(Class<?> type) {
+            return new RecordMetadata(type);
+        }
+    };
+
+    @Getter private final Class<?> recordClass;
+    @Getter private final String database;
+    @Getter private final String table;
+    @Getter private final String primaryKeyColumnName;
+    @Getter private final FieldAccessor primaryKeyAccessor;
+    @Getter private final List<ColumnMetadata> columns;
+    @Getter private final List<ColumnMetadata> foreignReferences;
+    @Getter private final List<FieldAccessor> instanceAccessors;
+    @Getter private final RecordCodec<?> codec;
+    private final Map<String, ColumnMetadata> columnsByName;
+    private final Map<String, FieldAccessor> accessorsByName;
+    private final Map<String, ColumnMetadata> columnsByField;
+    private final Constructor<?> noArgConstructor;
+    private final ConcurrentHashMap<Integer, PrivilegeView> views = new ConcurrentHashMap<>();
+
+    private RecordMetadata(Class<?> recordClass) {
+        this.recordClass = recordClass;
+
+        Database databaseAnnotation = recordClass.getAnnotation(Database.class);
+        this.database = databaseAnnotation == null ? null : databaseAnnotation.db();
+        this.table = databaseAnnotation == null ? null : databaseAnnotation.table();
+
+        PrimaryKey primaryKeyAnnotation = recordClass.getAnnotation(PrimaryKey.class);
+        this.primaryKeyColumnName = primaryKeyAnnotation == null ? null : primaryKeyAnnotation.column();
+
+        // Columns covered by the generated codec, if any, are accessed through it instead of reflection
+        this.codec = RecordCodecs.of(recordClass);
+        HashMap<String, Integer> codecSlots = new HashMap<>();
+        if (codec != null) {
+            String[] codecColumns = codec.columns();
+            for (int i = 0; i < codecColumns.length; i++) {
+                codecSlots.putIfAbsent(codecColumns[i], i);
+            }
+        }
+
+        ArrayList<ColumnMetadata> columns = new ArrayList<>();
+        ArrayList<ColumnMetadata> foreignReferences = new ArrayList<>();
+        ArrayList<FieldAccessor> instanceAccessors = new ArrayList<>();
+        LinkedHashMap<String, ColumnMetadata> columnsByName = new LinkedHashMap<>();
+        HashMap<String, FieldAccessor> accessorsByName = new HashMap<>();
+        HashMap<String, ColumnMetadata> columnsByField = new HashMap<>();
+
+        for (Field field : recordClass.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                continue;
+            }
+            if (!RSCodableUtil.isMarkedMappingElement(field)) {
+                FieldAccessor accessor = FieldAccessors.create(field);
+                instanceAccessors.add(accessor);
+                accessorsByName.put(field.getName(), accessor);
+                continue;
+            }
+            ColumnMetadata column = new ColumnMetadata(field, columns.size(), codec, codecSlots.getOrDefault(RSCodableUtil.getFieldNameInDB(field), -1));
+            instanceAccessors.add(column.getAccessor());
+            accessorsByName.put(field.getName(), column.getAccessor());
+            columns.add(column);
+            columnsByName.put(column.getColumnName(), column);
+            columnsByField.put(field.getName(), column);
+            if (column.isForeignReference()) {
+                foreignReferences.add(column);
+            }
+        }
+
+        this.columns = Collections.unmodifiableList(columns);
+        this.foreignReferences = Collections.unmodifiableList(foreignReferences);
+        this.instanceAccessors = Collections.unmodifiableList(instanceAccessors);
+        this.columnsByName = Collections.unmodifiableMap(columnsByName);
+        this.accessorsByName = Collections.unmodifiableMap(accessorsByName);
+        this.columnsByField = Collections.unmodifiableMap(columnsByField);
+        if (primaryKeyColumnName == null) {
+            this.primaryKeyAccessor = null;
+        } else if (codec != null && codec.hasPrimaryKey()) {
+            this.primaryKeyAccessor = new CodecFieldAccessor(codec, CodecFieldAccessor.PRIMARY_KEY);
+        } else {
+            this.primaryKeyAccessor = accessorsByName.get(primaryKeyColumnName);
+        }
+        this.noArgConstructor = findNoArgConstructor(recordClass);
+    }
+
+    private static Constructor<?> findNoArgConstructor(Class<?> recordClass) {
+        try {
+            Constructor<?> constructor = recordClass.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (NoSuchMethodException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the mapping model of the given class, building it on first access.
+     *
+     * @param recordClass The record class.
+     * @return The shared metadata instance of the class.
+     */
+    public static RecordMetadata of(Class<?> recordClass) {
+        return CACHE.get(recordClass);
+    }
+
+    /**
+     * @param columnName The column name in the database.
+     * @return The mapped column, or null if no field is mapped to the given column.
+     */
+    public ColumnMetadata getColumn(String columnName) {
+        return columnsByName.get(columnName);
+    }
+
+    /**
+     * @param fieldName The Java field name.
+     * @return The accessor of the declared instance field, or null if there is none.
+     */
+    public FieldAccessor getAccessor(String fieldName) {
+        return accessorsByName.get(fieldName);
+    }
+
+    /**
+     * Copies every declared instance field from one record to another of the same class.
+     *
+     * @param from The source instance.
+     * @param to   The target instance.
+     */
+    public void copyState(Object from, Object to) {
+        for (FieldAccessor accessor : instanceAccessors) {
+            accessor.set(to, accessor.get(from));
+        }
+    }
+
+    /**
+     * Copies the declared instance fields from one record to another of the same class, except the columns
+     * a privilege may not read other than the primary key, which keep the value of the target.
+     *
+     * @param from The source instance.
+     * @param to   The target instance.
+     * @param view The privilege the source was read with.
+     * @return The columns copied.
+     */
+    public List<ColumnMetadata> copyState(Object from, Object to, PrivilegeView view) {
+        Set<FieldAccessor> skipped = Collections.newSetFromMap(new IdentityHashMap<>());
+        ArrayList<ColumnMetadata> copied = new ArrayList<>(columns.size());
+        for (ColumnMetadata column : columns) {
+            if (view.mayRead(column) || column.getColumnName().equals(primaryKeyColumnName)) {
+                copied.add(column);
+            } else {
+                skipped.add(column.getAccessor());
+            }
+        }
+        for (FieldAccessor accessor : instanceAccessors) {
+            if (!skipped.contains(accessor)) {
+                accessor.set(to, accessor.get(from));
+            }
+        }
+        return copied;
+    }
+
+    /**
+     * Creates a new instance through the generated codec, or the cached no-parameter constructor.
+     *
+     * @return The new instance.
+     * @throws NoSuchMethodException If the class has no no-parameter constructor.
+     */
+    public Object newInstance() throws NoSuchMethodException, InvocationTargetException, InstantiationException, IllegalAccessException {
+        if (codec != null) {
+            Object instance = codec.newInstance();
+            if (instance != null) {
+                return instance;
+            }
+        }
+        if (noArgConstructor == null) {
+            throw new NoSuchMethodException(recordClass.getName() + ".<init>()");
+        }
+        return noArgConstructor.newInstance();
+    }
+
+    /**
+     * Returns the columns the given privilege level may read and write, compiled on first use.
+     * Up to {@link #MAX_CACHED_VIEWS} privilege levels are cached per class.
+     *
+     * @param privilege The privilege level.
+     * @return The compiled view.
+     */
+    public PrivilegeView getView(int privilege) {
+        PrivilegeView view = views.get(privilege);
+        if (view == null) {
+            view = new PrivilegeView(this, privilege);
+            if (views.size() < MAX_CACHED_VIEWS) {
+                views.putIfAbsent(privilege, view);
+            }
+        }
+        return view;
+    }
+
+    /**
+     * @param fieldName The Java field name.
+     * @return The mapped column of the field, or null if the field is not mapped.
+     */
+    public ColumnMetadata getColumnByField(String fieldName) {
+        return columnsByField.get(fieldName);
+    }
+
+    public boolean hasForeignReferences() {
+        return !foreignReferences.isEmpty();
+    }
+}
@@ -0,0 +1,138 @@
+package me.hysong.libcodablejdbc.utils.objects;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publisher of the records of a query, reading rows from a {@link RecordCursor} only as subscribers request them.
+ * <p>
+ * The publisher is cold: each subscriber gets its own cursor, opened on its first request. Rows are read
+ * and delivered on a virtual thread, never more than the outstanding demand, so a slow subscriber leaves
+ * the rest of the result in the database (or in the driver's fetch buffer) instead of in memory. The cursor,
+ * and with it the connection, stays open until the last row is delivered, the subscription is cancelled,
+ * or an error is signalled.
+ *
+ * @param <T> The record class.
+ */
+public class RecordPublisher<T extends DatabaseRecord> implements Flow.Publisher<T> {
+    private static final Executor DELIVERY = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("codable-publisher-", 0).factory());
+
+    private final Callable<RecordCursor<T>> opener;
+
+    /**
+     * @param opener Opens the cursor of one subscriber, e.g. {@code () -> service.searchCursor(...)}.
+     */
+    public RecordPublisher(Callable<RecordCursor<T>> opener) {
+        this.opener = opener;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        CursorSubscription subscription = new CursorSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    private final class CursorSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        // 0 이 아니면 전달 루프가 실행 중이거나 예약됨
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile boolean cancelled = false;
+        private volatile Throwable error;
+        // 아래 필드는 전달 루프에서만 접근
+        private RecordCursor<T> cursor;
+        private boolean done = false;
+
+        private CursorSubscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Requested a non-positive number of records: " + n);
+            } else {
+                demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (pending.getAndIncrement() == 0) {
+                DELIVERY.execute(this::drain);
+            }
+        }
+
+        /**
+         * Delivers rows while there is demand. Only one drain runs at a time, so the cursor is never used
+         * concurrently; requests arriving meanwhile make it loop again instead of starting another.
+         */
+        private void drain() {
+            int missed = 1;
+            do {
+                if (!done) {
+                    deliver();
+                }
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void deliver() {
+            try {
+                while (!cancelled && error == null && demand.get() > 0) {
+                    if (cursor == null) {
+                        cursor = opener.call();
+                    }
+                    if (!cursor.hasNext()) {
+                        // 마지막 행을 읽으면 커서가 스스로 닫힘
+                        done = true;
+                        subscriber.onComplete();
+                        return;
+                    }
+                    T record = cursor.next();
+                    demand.decrementAndGet();
+                    subscriber.onNext(record);
+                }
+                if (error != null) {
+                    fail(error);
+                } else if (cancelled) {
+                    done = true;
+                    closeCursor();
+                }
+            } catch (Throwable e) {
+                fail(e);
+            }
+        }
+
+        private void fail(Throwable e) {
+            done = true;
+            try {
+                closeCursor();
+            } catch (RuntimeException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            if (!cancelled) {
+                subscriber.onError(e);
+            }
+        }
+
+        private void closeCursor() {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+}
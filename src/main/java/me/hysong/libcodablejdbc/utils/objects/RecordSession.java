@@ -0,0 +1,142 @@
+package me.hysong.libcodablejdbc.utils.objects;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Unit of work holding an identity map of the records loaded while it is open, keyed by record class
+ * and primary key.
+ * <p>
+ * A session is bound to the thread that opens it until it is closed:
+ * <pre>{@code
+ * try (RecordSession session = RecordSession.open()) {
+ *     LinkedHashMap<Object, DatabaseRecord> orders = service.selectBy(...);
+ *     DatabaseRecord.deepFetchAll(orders.values(), privilege, 2);
+ * }
+ * }</pre>
+ * While it is open, result set hydration hands out the already loaded instance for a primary key instead
+ * of decoding a new one, and foreign references by primary key are served from the session without a
+ * query. The first loaded state of a record wins; {@link #evict(Class, Object)} or {@link #clear()} to
+ * reload. Writes through the template methods evict deleted records, and keys written from another instance
+ * than the session's. Cursors do not use the session, so streaming a large result does not pin it in memory.
+ */
+public final class RecordSession implements AutoCloseable {
+    private static final ThreadLocal<RecordSession> CURRENT = new ThreadLocal<>();
+
+    private record Key(Class<?> recordClass, Object primaryKey) {
+    }
+
+    private final ConcurrentHashMap<Key, DatabaseRecord> records = new ConcurrentHashMap<>();
+    private final RecordSession previous;
+    private final Thread owner;
+    private boolean closed = false;
+
+    private RecordSession(RecordSession previous) {
+        this.previous = previous;
+        this.owner = Thread.currentThread();
+    }
+
+    /**
+     * Opens a session and binds it to the current thread. Sessions nest: closing restores the enclosing one.
+     *
+     * @return The session, to be closed by the thread that opened it.
+     */
+    public static RecordSession open() {
+        RecordSession session = new RecordSession(CURRENT.get());
+        CURRENT.set(session);
+        return session;
+    }
+
+    /**
+     * @return The session bound to the current thread, or null if there is none.
+     */
+    public static RecordSession current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @param recordClass The record class.
+     * @param primaryKey  The primary key value.
+     * @return The loaded record, or null if it is not in the session.
+     */
+    public DatabaseRecord get(Class<?> recordClass, Object primaryKey) {
+        if (primaryKey == null) {
+            return null;
+        }
+        return records.get(new Key(recordClass, ForeignKeyResolver.normalizeKey(primaryKey)));
+    }
+
+    /**
+     * Adds a loaded record to the session, unless a record of the same class and primary key is already there.
+     *
+     * @param record The record.
+     * @return The record of the session for the key: the given one, or the one loaded before it.
+     */
+    public DatabaseRecord register(DatabaseRecord record) {
+        Object primaryKey = record.getMetadata().getPrimaryKeyAccessor() == null ? null : record.getMetadata().getPrimaryKeyAccessor().get(record);
+        if (primaryKey == null) {
+            return record;
+        }
+        DatabaseRecord existing = records.putIfAbsent(new Key(record.getClass(), ForeignKeyResolver.normalizeKey(primaryKey)), record);
+        return existing != null ? existing : record;
+    }
+
+    /**
+     * Removes a record from the session, so the next load reads it again.
+     */
+    public void evict(Class<?> recordClass, Object primaryKey) {
+        if (primaryKey != null) {
+            records.remove(new Key(recordClass, ForeignKeyResolver.normalizeKey(primaryKey)));
+        }
+    }
+
+    public void clear() {
+        records.clear();
+    }
+
+    public int size() {
+        return records.size();
+    }
+
+    /**
+     * Wraps a task so it runs with the current thread's session, e.g. on another thread of an executor.
+     */
+    static <V> Callable<V> propagate(Callable<V> task) {
+        RecordSession session = CURRENT.get();
+        if (session == null) {
+            return task;
+        }
+        return () -> {
+            RecordSession outer = CURRENT.get();
+            CURRENT.set(session);
+            try {
+                return task.call();
+            } finally {
+                if (outer == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(outer);
+                }
+            }
+        };
+    }
+
+    /**
+     * Unbinds the session from the thread, restoring the enclosing session if any, and clears it.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (Thread.currentThread() == owner && CURRENT.get() == this) {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+        records.clear();
+    }
+}
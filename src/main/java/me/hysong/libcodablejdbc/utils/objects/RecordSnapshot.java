@@ -0,0 +1,94 @@
+package me.hysong.libcodablejdbc.utils.objects;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.temporal.TemporalAccessor;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Column values of a record as last read from or written to the database, for dirty tracking.
+ * <p>
+ * Values of immutable types are kept as is and primitive arrays are copied, so a later comparison
+ * detects both reassignment and in-place changes. Other values (composition objects, collections, JSON
+ * objects...) can change without being reassigned, so their columns always count as changed.
+ */
+final class RecordSnapshot {
+    private static final Object UNTRACKED = new Object();
+
+    private RecordSnapshot() {
+    }
+
+    /**
+     * @return The current values of every column of the record, indexed by {@link ColumnMetadata#getIndex()}.
+     */
+    static Object[] take(RecordMetadata metadata, Object record) {
+        List<ColumnMetadata> columns = metadata.getColumns();
+        Object[] values = new Object[columns.size()];
+        for (ColumnMetadata column : columns) {
+            values[column.getIndex()] = column.isComposition() ? UNTRACKED : copyOf(column.getAccessor().get(record));
+        }
+        return values;
+    }
+
+    /**
+     * Refreshes some columns of a snapshot, leaving the others as they were.
+     *
+     * @param snapshot The previous snapshot, null if the record was not tracked.
+     * @param columns  The columns to refresh.
+     * @return A new snapshot; columns not refreshed of an untracked record count as changed.
+     */
+    static Object[] refresh(Object[] snapshot, RecordMetadata metadata, Object record, Collection<ColumnMetadata> columns) {
+        Object[] values;
+        if (snapshot == null) {
+            values = new Object[metadata.getColumns().size()];
+            Arrays.fill(values, UNTRACKED);
+        } else {
+            // 복사본 레코드와 공유할 수 있으므로 새 배열에 씀
+            values = snapshot.clone();
+        }
+        for (ColumnMetadata column : columns) {
+            values[column.getIndex()] = column.isComposition() ? UNTRACKED : copyOf(column.getAccessor().get(record));
+        }
+        return values;
+    }
+
+    /**
+     * @param snapshot The value in the snapshot.
+     * @param current  The current value of the column.
+     * @return Whether the column has to be written.
+     */
+    static boolean isChanged(Object snapshot, Object current) {
+        return snapshot == UNTRACKED || !Objects.deepEquals(snapshot, current);
+    }
+
+    private static Object copyOf(Object value) {
+        return switch (value) {
+            case null -> null;
+            case String s -> s;
+            case Number n when isImmutable(n) -> n;
+            case Boolean b -> b;
+            case Character c -> c;
+            case Enum<?> e -> e;
+            case UUID u -> u;
+            case TemporalAccessor t when t.getClass().getName().startsWith("java.time.") -> t;
+            case byte[] a -> a.clone();
+            case int[] a -> a.clone();
+            case long[] a -> a.clone();
+            case short[] a -> a.clone();
+            case char[] a -> a.clone();
+            case double[] a -> a.clone();
+            case float[] a -> a.clone();
+            case boolean[] a -> a.clone();
+            default -> UNTRACKED;
+        };
+    }
+
+    private static boolean isImmutable(Number n) {
+        return n instanceof Integer || n instanceof Long || n instanceof Double || n instanceof Float
+                || n instanceof Short || n instanceof Byte || n instanceof BigDecimal || n instanceof BigInteger;
+    }
+}
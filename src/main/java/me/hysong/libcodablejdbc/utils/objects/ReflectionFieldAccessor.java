@@ -0,0 +1,36 @@
+package me.hysong.libcodablejdbc.utils.objects;
+
+import me.hysong.libcodablejdbc.utils.interfaces.FieldAccessor;
+
+import java.lang.reflect.Field;
+
+/**
+ * {@link FieldAccessor} using plain {@link Field#get(Object)} / {@link Field#set(Object, Object)}.
+ * Used when a field cannot be unreflected into method handles.
+ */
+public final class ReflectionFieldAccessor implements FieldAccessor {
+    private final Field field;
+
+    public ReflectionFieldAccessor(Field field) {
+        field.setAccessible(true);
+        this.field = field;
+    }
+
+    @Override
+    public Object get(Object target) {
+        try {
+            return field.get(target);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void set(Object target, Object value) {
+        try {
+            field.set(target, value);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package me.hysong.libcodablejdbc.utils.objects;
+
+import lombok.Getter;
+import me.hysong.libcodablejdbc.CompositionObject;
+import me.hysong.libcodablejdbc.utils.interfaces.ColumnReader;
+import me.hysong.libcodablejdbc.utils.interfaces.RecordCodec;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Maps the columns of one result set to the mapped fields of a record class.
+ * <p>
+ * The plan is built once from {@link ResultSetMetaData} before iterating rows: each present column gets
+ * its result set index and its pre-chosen {@link ColumnReader}, and columns absent from the query are
+ * simply not part of the plan. Decoding a row is then an indexed loop without label lookups.
+ * Columns covered by the generated {@link RecordCodec} of the class are decoded by the codec in a single call.
+ */
+public final class RowDecoderPlan {
+    @Getter private final RecordMetadata metadata;
+    @Getter private final List<ColumnMetadata> foreignReferences;
+    @Getter private final int primaryKeyIndex;
+    private final ColumnMetadata[] columns;
+    private final ColumnReader[] readers;
+    private final int[] indexes;
+    private final RecordCodec<Object> codec;
+    private final int[] codecIndexes;
+
+    @SuppressWarnings("unchecked")
+    private RowDecoderPlan(RecordMetadata metadata, ResultSetMetaData rsmd, String prefix) throws SQLException {
+        this.metadata = metadata;
+        RecordCodec<?> codec = metadata.getCodec();
+        int[] codecIndexes = codec == null ? null : new int[codec.columns().length];
+        boolean codecUsed = false;
+
+        HashMap<String, Integer> labels = new HashMap<>();
+        HashMap<String, Integer> lowerCaseLabels = new HashMap<>();
+        for (int i = rsmd.getColumnCount(); i >= 1; i--) {
+            // Iterate backwards so the first occurrence of a duplicated label wins, like findColumn
+            String label = rsmd.getColumnLabel(i);
+            labels.put(label, i);
+            lowerCaseLabels.put(label.toLowerCase(Locale.ROOT), i);
+        }
+
+        ArrayList<ColumnMetadata> columns = new ArrayList<>();
+        ArrayList<ColumnReader> readers = new ArrayList<>();
+        ArrayList<Integer> indexes = new ArrayList<>();
+        ArrayList<ColumnMetadata> foreignReferences = new ArrayList<>();
+
+        for (ColumnMetadata column : metadata.getColumns()) {
+            if (column.isComposition()) {
+                String[] keys = compositionKeysOf(column);
+                if (keys == null) {
+                    continue;
+                }
+                int[] keyIndexes = new int[keys.length];
+                boolean present = false;
+                for (int i = 0; i < keys.length; i++) {
+                    keyIndexes[i] = indexOf(labels, lowerCaseLabels, prefix + column.getFieldName() + "_" + keys[i]);
+                    present |= keyIndexes[i] > 0;
+                }
+                if (present) {
+                    columns.add(column);
+                    readers.add(ColumnReaders.composition(column, keys, keyIndexes));
+                    indexes.add(0);
+                }
+                continue;
+            }
+
+            int index = indexOf(labels, lowerCaseLabels, prefix + column.getColumnName());
+            if (index == 0) {
+                // Column not present in this query — skip gracefully
+                continue;
+            }
+            if (column.isForeignReference()) {
+                foreignReferences.add(column);
+            }
+            if (column.getCodecSlot() >= 0) {
+                // Decoded by the generated codec in one call per row
+                codecIndexes[column.getCodecSlot()] = index;
+                codecUsed = true;
+                continue;
+            }
+            columns.add(column);
+            readers.add(column.getReader());
+            indexes.add(index);
+        }
+        this.codec = codecUsed ? (RecordCodec<Object>) codec : null;
+        this.codecIndexes = codecIndexes;
+
+        this.columns = columns.toArray(new ColumnMetadata[0]);
+        this.readers = readers.toArray(new ColumnReader[0]);
+        this.indexes = indexes.stream().mapToInt(Integer::intValue).toArray();
+        this.foreignReferences = Collections.unmodifiableList(foreignReferences);
+        this.primaryKeyIndex = metadata.getPrimaryKeyColumnName() == null ? 0 : indexOf(labels, lowerCaseLabels, prefix + metadata.getPrimaryKeyColumnName());
+    }
+
+    /**
+     * Plans the decoding of the given result set into records described by the given metadata.
+     *
+     * @param metadata The mapping model of the record class.
+     * @param rs       The result set to decode.
+     * @return The plan, valid for every row of the result set.
+     * @throws SQLException If the result set metadata cannot be read.
+     */
+    public static RowDecoderPlan of(RecordMetadata metadata, ResultSet rs) throws SQLException {
+        return new RowDecoderPlan(metadata, rs.getMetaData(), "");
+    }
+
+    /**
+     * Plans the decoding of columns labelled with a prefix, e.g. the aliased columns of a joined table.
+     *
+     * @param metadata The mapping model of the record class.
+     * @param rs       The result set to decode.
+     * @param prefix   The prefix of the column labels.
+     * @return The plan, valid for every row of the result set.
+     * @throws SQLException If the result set metadata cannot be read.
+     */
+    public static RowDecoderPlan of(RecordMetadata metadata, ResultSet rs, String prefix) throws SQLException {
+        return new RowDecoderPlan(metadata, rs.getMetaData(), prefix);
+    }
+
+    /**
+     * Decodes the current row of the result set into the target.
+     *
+     * @param rs     The result set, positioned on a row.
+     * @param target The record instance to populate.
+     */
+    public void decode(ResultSet rs, Object target) {
+        if (codec != null) {
+            try {
+                codec.hydrate(target, rs, codecIndexes);
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to read " + metadata.getRecordClass().getName() + " from ResultSet", e);
+            } catch (IllegalArgumentException | ClassCastException e) {
+                throw new RuntimeException("Failed to set fields on " + target.getClass().getName(), e);
+            }
+        }
+        for (int slot = 0; slot < readers.length; slot++) {
+            try {
+                readers[slot].read(rs, indexes[slot], target);
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to read column '" + columns[slot].getColumnName() + "' from ResultSet", e);
+            } catch (IllegalArgumentException e) {
+                throw new RuntimeException("Failed to set field '" + columns[slot].getFieldName() + "' on " + target.getClass().getName(), e);
+            }
+        }
+    }
+
+    private static int indexOf(Map<String, Integer> labels, Map<String, Integer> lowerCaseLabels, String name) {
+        Integer index = labels.get(name);
+        if (index == null) {
+            index = lowerCaseLabels.get(name.toLowerCase(Locale.ROOT));
+        }
+        return index == null ? 0 : index;
+    }
+
+    private static String[] compositionKeysOf(ColumnMetadata column) {
+        if (column.getCompositionKeys() != null) {
+            return column.getCompositionKeys();
+        }
+        try {
+            return ((CompositionObject) column.getType().getConstructor().newInstance()).compositionKeys();
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package me.hysong.libcodablejdbc.utils.objects;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of the SQL generated by the table service templates.
+ * <p>
+ * Templates are cached per record class (backed by a {@link ClassValue}, like {@link RecordMetadata}) and
+ * keyed by operation, privilege level and statement shape, e.g. the bound column list or the structure of
+ * the search expressions. A template also carries the columns whose values are bound, in order, so a hit
+ * only costs a map lookup and the parameter binding. Once {@link #getMaxSize()} templates are cached,
+ * new shapes are built on every call instead of being stored.
+ */
+public class SqlTemplateCache {
+
+    /**
+     * A generated statement and the columns bound to its leading parameters.
+     */
+    public record SqlTemplate(String sql, List<String> columns) {
+    }
+
+    @FunctionalInterface
+    public interface TemplateBuilder<E extends Exception> {
+        SqlTemplate build() throws E;
+    }
+
+    private record Key(String operation, int privilege, List<?> shape) {
+    }
+
+    private static final ClassValue<ConcurrentHashMap<Key, SqlTemplate>> TEMPLATES = new ClassValue<>() {
+        @Override
+        protected ConcurrentHashMap<Key, SqlTemplate> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private static final AtomicInteger size = new AtomicInteger();
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static volatile int maxSize = 4096;
+
+    /**
+     * Returns the cached template, building and caching it on first use.
+     *
+     * @param recordClass The record class the statement is generated for.
+     * @param operation   The operation name, e.g. "update".
+     * @param privilege   The privilege level the statement was filtered with, 0 if it does not depend on it.
+     * @param shape       Everything else the generated SQL depends on; must be immutable.
+     * @param builder     Builds the template on a miss.
+     * @return The template.
+     */
+    public static <E extends Exception> SqlTemplate get(Class<?> recordClass, String operation, int privilege, List<?> shape, TemplateBuilder<E> builder) throws E {
+        ConcurrentHashMap<Key, SqlTemplate> templates = TEMPLATES.get(recordClass);
+        Key key = new Key(operation, privilege, shape);
+        SqlTemplate template = templates.get(key);
+        if (template != null) {
+            hits.increment();
+            return template;
+        }
+        misses.increment();
+        template = builder.build();
+        if (size.get() < maxSize && templates.putIfAbsent(key, template) == null) {
+            size.incrementAndGet();
+        }
+        return template;
+    }
+
+    public static int size() {
+        return size.get();
+    }
+
+    public static long getHits() {
+        return hits.sum();
+    }
+
+    public static long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The ratio of lookups served from the cache, 0 if there was none yet.
+     */
+    public static double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public static int getMaxSize() {
+        return maxSize;
+    }
+
+    public static void setMaxSize(int maxSize) {
+        SqlTemplateCache.maxSize = maxSize;
+    }
+}
@@ -0,0 +1,214 @@
+package me.hysong.libcodablejdbc.utils.objects;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache of prepared statements of one connection, keyed by SQL text.
+ * <p>
+ * {@link #wrap(Connection, int)} returns a connection whose {@code prepareStatement(String)} hands out a
+ * cached statement when one is free. Closing such a statement clears its parameters and batch and puts
+ * it back in the cache instead of closing it, so callers keep the usual prepare/close pattern. A statement
+ * is removed from the cache while it is in use, so preparing the same SQL twice on one connection yields
+ * two distinct statements. Other {@code prepareStatement} overloads are not cached. Closing the connection
+ * closes every cached statement.
+ */
+public class StatementCache implements InvocationHandler {
+    private final Connection connection;
+    private final int maxSize;
+    private final LinkedHashMap<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private Connection proxy;
+
+    private StatementCache(Connection connection, int maxSize, LongAdder hits, LongAdder misses) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    /**
+     * @param connection The connection to wrap.
+     * @param maxSize    The maximum number of idle statements kept for the connection.
+     * @return The caching connection.
+     */
+    public static Connection wrap(Connection connection, int maxSize) {
+        return wrap(connection, maxSize, new LongAdder(), new LongAdder());
+    }
+
+    static Connection wrap(Connection connection, int maxSize, LongAdder hits, LongAdder misses) {
+        StatementCache cache = new StatementCache(connection, maxSize, hits, misses);
+        cache.proxy = (Connection) Proxy.newProxyInstance(
+                StatementCache.class.getClassLoader(), new Class<?>[]{Connection.class}, cache);
+        return cache.proxy;
+    }
+
+    /**
+     * @param connection A connection returned by {@link #wrap(Connection, int)}.
+     * @return The statement cache behind the connection, or null if it is not a caching connection.
+     */
+    public static StatementCache of(Connection connection) {
+        if (connection != null && Proxy.isProxyClass(connection.getClass())
+                && Proxy.getInvocationHandler(connection) instanceof StatementCache cache) {
+            return cache;
+        }
+        return null;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public synchronized int size() {
+        return statements.size();
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "prepareStatement":
+                if (args.length == 1) {
+                    return prepare((String) args[0]);
+                }
+                break;
+            case "close":
+                closeStatements();
+                break;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "StatementCache[" + connection + "]";
+        }
+        return invokeOn(connection, method, args);
+    }
+
+    private PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement;
+        synchronized (this) {
+            statement = statements.remove(sql);
+        }
+        if (statement != null && !statement.isClosed()) {
+            hits.increment();
+        } else {
+            misses.increment();
+            statement = connection.prepareStatement(sql);
+        }
+        return (PreparedStatement) Proxy.newProxyInstance(
+                StatementCache.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, new Handle(sql, statement));
+    }
+
+    private void giveBack(String sql, PreparedStatement statement) {
+        ArrayList<PreparedStatement> evicted = new ArrayList<>();
+        synchronized (this) {
+            if (statements.putIfAbsent(sql, statement) != null) {
+                evicted.add(statement);
+            }
+            Iterator<PreparedStatement> eldest = statements.values().iterator();
+            while (statements.size() > maxSize && eldest.hasNext()) {
+                evicted.add(eldest.next());
+                eldest.remove();
+            }
+        }
+        // Closing may hit the network, so do it outside the lock
+        for (PreparedStatement e : evicted) {
+            closeQuietly(e);
+        }
+    }
+
+    private void closeStatements() {
+        ArrayList<PreparedStatement> cached;
+        synchronized (this) {
+            cached = new ArrayList<>(statements.values());
+            statements.clear();
+        }
+        for (PreparedStatement statement : cached) {
+            closeQuietly(statement);
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private static Object invokeOn(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * One checkout of a cached statement; stale handles reject every call once closed.
+     */
+    private final class Handle implements InvocationHandler {
+        private final String sql;
+        private final PreparedStatement statement;
+        private boolean closed = false;
+
+        private Handle(String sql, PreparedStatement statement) {
+            this.sql = sql;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || statement.isClosed();
+                case "getConnection":
+                    return StatementCache.this.proxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return statement.toString();
+            }
+            if (closed) {
+                throw new SQLException("Statement is closed");
+            }
+            return invokeOn(statement, method, args);
+        }
+
+        private void release() {
+            try {
+                if (statement.isClosed() || connection.isClosed()) {
+                    return;
+                }
+                statement.clearParameters();
+                statement.clearBatch();
+                statement.clearWarnings();
+            } catch (SQLException e) {
+                closeQuietly(statement);
+                return;
+            }
+            giveBack(sql, statement);
+        }
+    }
+}
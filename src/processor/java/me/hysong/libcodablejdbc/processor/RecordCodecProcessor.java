@@ -0,0 +1,372 @@
+package me.hysong.libcodablejdbc.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Generates a reflection-free {@code RecordCodec} for every {@code @Record} / {@code @Database} class.
+ * <p>
+ * The generated class is named {@code <BinaryName>$$RecordCodec}, lives in the record's package and is
+ * picked up at runtime by {@code RecordCodecs}. Private fields are reached through {@code static final}
+ * VarHandles, which the JIT treats as constants; columns of types the codec does not decode itself are
+ * delegated to the runtime column readers. The mapping rules mirror {@code RSCodableUtil}.
+ * Annotations are referenced by name so the processor does not depend on the library classes.
+ */
+@SupportedAnnotationTypes({RecordCodecProcessor.RECORD, RecordCodecProcessor.DATABASE})
+public class RecordCodecProcessor extends AbstractProcessor {
+    static final String PACKAGE = "me.hysong.libcodablejdbc";
+    static final String RECORD = PACKAGE + ".Record";
+    static final String DATABASE = PACKAGE + ".Database";
+    static final String COLUMN = PACKAGE + ".Column";
+    static final String NOT_COLUMN = PACKAGE + ".NotColumn";
+    static final String PRIMARY_KEY = PACKAGE + ".PrimaryKey";
+    static final String COMPOSITION_OBJECT = PACKAGE + ".CompositionObject";
+    static final String SUFFIX = "$$RecordCodec";
+
+    private enum Kind {
+        INT("int", "getInt", "setInt"), LONG("long", "getLong", "setLong"), DOUBLE("double", "getDouble", "setDouble"),
+        FLOAT("float", "getFloat", "setFloat"), SHORT("short", "getShort", "setShort"), BYTE("byte", "getByte", "setByte"),
+        BOOLEAN("boolean", "getBoolean", "setBoolean"),
+        BOXED_INT("int", "getInt", null), BOXED_LONG("long", "getLong", null), BOXED_DOUBLE("double", "getDouble", null),
+        BOXED_FLOAT("float", "getFloat", null), BOXED_SHORT("short", "getShort", null), BOXED_BYTE("byte", "getByte", null),
+        BOXED_BOOLEAN("boolean", "getBoolean", null),
+        STRING("java.lang.String", "getString", null), BIG_DECIMAL("java.math.BigDecimal", "getBigDecimal", null),
+        BYTES("byte[]", "getBytes", null), SQL_DATE("java.sql.Date", "getDate", null),
+        SQL_TIME("java.sql.Time", "getTime", null), SQL_TIMESTAMP("java.sql.Timestamp", "getTimestamp", null),
+        LOCAL_DATE("java.sql.Date", "getDate", null), LOCAL_TIME("java.sql.Time", "getTime", null),
+        LOCAL_DATE_TIME("java.sql.Timestamp", "getTimestamp", null),
+        DELEGATE(null, null, null);
+
+        final String readType;
+        final String getter;
+        final String primitiveSetter;
+
+        Kind(String readType, String getter, String primitiveSetter) {
+            this.readType = readType;
+            this.getter = getter;
+            this.primitiveSetter = primitiveSetter;
+        }
+
+        boolean isPrimitive() {
+            return primitiveSetter != null;
+        }
+    }
+
+    private record FieldSpec(String name, String column, String type, Kind kind, boolean direct) {
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        LinkedHashSet<TypeElement> types = new LinkedHashSet<>();
+        for (TypeElement annotation : annotations) {
+            types.addAll(ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(annotation)));
+        }
+        for (TypeElement type : types) {
+            if (!isGeneratable(type)) {
+                continue;
+            }
+            try {
+                generate(type);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to generate record codec: " + e.getMessage(), type);
+            }
+        }
+        return false;
+    }
+
+    private boolean isGeneratable(TypeElement type) {
+        if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)) {
+            return false;
+        }
+        // The codec lives in the record's package, so every enclosing class must be reachable from there
+        for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) {
+            if (e.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            if (e != type && !e.getModifiers().contains(Modifier.STATIC) && e.getEnclosingElement() instanceof TypeElement) {
+                return false;
+            }
+        }
+        return !(type.getEnclosingElement() instanceof TypeElement) || type.getModifiers().contains(Modifier.STATIC);
+    }
+
+    private void generate(TypeElement type) throws IOException {
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)) + SUFFIX;
+        String recordType = type.getQualifiedName().toString();
+
+        boolean isRecord = annotation(type, RECORD) != null;
+        AnnotationMirror primaryKey = annotation(type, PRIMARY_KEY);
+        String primaryKeyName = primaryKey == null ? null : stringValue(primaryKey, "column");
+
+        ArrayList<FieldSpec> columns = new ArrayList<>();
+        FieldSpec primaryKeyField = null;
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (field.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            boolean writable = !field.getModifiers().contains(Modifier.FINAL);
+            if (writable && field.getSimpleName().contentEquals(String.valueOf(primaryKeyName))) {
+                primaryKeyField = describe(field, null);
+            }
+
+            AnnotationMirror column = annotation(field, COLUMN);
+            boolean mapped = (isRecord && annotation(field, NOT_COLUMN) == null) || column != null;
+            // Final fields cannot be written through a VarHandle; composition fields span several columns.
+            // Both stay on the runtime path.
+            if (!mapped || !writable || isComposition(field.asType())) {
+                continue;
+            }
+            String mapTo = column == null ? "" : stringValue(column, "mapTo");
+            columns.add(describe(field, mapTo == null || mapTo.isEmpty() ? field.getSimpleName().toString() : mapTo));
+        }
+
+        boolean instantiable = ElementFilter.constructorsIn(type.getEnclosedElements()).stream()
+                .anyMatch(c -> c.getParameters().isEmpty() && !c.getModifiers().contains(Modifier.PRIVATE));
+
+        try (Writer w = processingEnv.getFiler().createSourceFile(packageName.isEmpty() ? simpleName : packageName + "." + simpleName, type).openWriter()) {
+            writeCodec(w, packageName, simpleName, recordType, columns, primaryKeyField, instantiable);
+        }
+    }
+
+    private FieldSpec describe(VariableElement field, String column) {
+        TypeMirror type = field.asType();
+        String erased = processingEnv.getTypeUtils().erasure(type).toString();
+        boolean direct = !field.getModifiers().contains(Modifier.PRIVATE);
+        return new FieldSpec(field.getSimpleName().toString(), column, erased, kindOf(type, erased), direct);
+    }
+
+    private Kind kindOf(TypeMirror type, String erased) {
+        // Same precedence as the runtime column readers
+        return switch (type.getKind()) {
+            case INT -> Kind.INT;
+            case LONG -> Kind.LONG;
+            case DOUBLE -> Kind.DOUBLE;
+            case FLOAT -> Kind.FLOAT;
+            case SHORT -> Kind.SHORT;
+            case BYTE -> Kind.BYTE;
+            case BOOLEAN -> Kind.BOOLEAN;
+            default -> switch (erased) {
+                case "java.lang.String" -> Kind.STRING;
+                case "java.lang.Integer" -> Kind.BOXED_INT;
+                case "java.lang.Long" -> Kind.BOXED_LONG;
+                case "java.lang.Double" -> Kind.BOXED_DOUBLE;
+                case "java.lang.Float" -> Kind.BOXED_FLOAT;
+                case "java.lang.Short" -> Kind.BOXED_SHORT;
+                case "java.lang.Byte" -> Kind.BOXED_BYTE;
+                case "java.lang.Boolean" -> Kind.BOXED_BOOLEAN;
+                case "byte[]" -> Kind.BYTES;
+                case "java.math.BigDecimal" -> Kind.BIG_DECIMAL;
+                case "java.sql.Date" -> Kind.SQL_DATE;
+                case "java.sql.Time" -> Kind.SQL_TIME;
+                case "java.sql.Timestamp" -> Kind.SQL_TIMESTAMP;
+                case "java.time.LocalDate" -> Kind.LOCAL_DATE;
+                case "java.time.LocalTime" -> Kind.LOCAL_TIME;
+                case "java.time.LocalDateTime" -> Kind.LOCAL_DATE_TIME;
+                default -> Kind.DELEGATE;
+            };
+        };
+    }
+
+    private boolean isComposition(TypeMirror type) {
+        // Mirrors fieldType.isAssignableFrom(CompositionObject.class)
+        if (type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        String erased = processingEnv.getTypeUtils().erasure(type).toString();
+        return erased.equals(COMPOSITION_OBJECT) || erased.equals("java.lang.Object");
+    }
+
+    private void writeCodec(Writer w, String packageName, String simpleName, String recordType,
+                            List<FieldSpec> columns, FieldSpec primaryKey, boolean instantiable) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            sb.append("package ").append(packageName).append(";\n\n");
+        }
+        sb.append("@javax.annotation.processing.Generated(\"").append(RecordCodecProcessor.class.getName()).append("\")\n");
+        sb.append("public final class ").append(simpleName)
+                .append(" implements ").append(PACKAGE).append(".utils.interfaces.RecordCodec<").append(recordType).append("> {\n\n");
+
+        // Columns and VarHandles
+        sb.append("    private static final String[] COLUMNS = {");
+        for (int k = 0; k < columns.size(); k++) {
+            sb.append(k > 0 ? ", " : "").append('"').append(columns.get(k).column()).append('"');
+        }
+        sb.append("};\n");
+
+        LinkedHashMap<String, FieldSpec> handleFields = new LinkedHashMap<>();
+        for (FieldSpec spec : columns) {
+            if (!spec.direct()) {
+                handleFields.putIfAbsent(spec.name(), spec);
+            }
+        }
+        if (primaryKey != null && !primaryKey.direct()) {
+            handleFields.putIfAbsent(primaryKey.name(), primaryKey);
+        }
+        Collection<FieldSpec> handles = handleFields.values();
+        for (FieldSpec spec : handles) {
+            sb.append("    private static final java.lang.invoke.VarHandle ").append(handle(spec)).append(";\n");
+        }
+        if (!handles.isEmpty()) {
+            sb.append("\n    static {\n        try {\n");
+            sb.append("            java.lang.invoke.MethodHandles.Lookup lookup = java.lang.invoke.MethodHandles.privateLookupIn(")
+                    .append(recordType).append(".class, java.lang.invoke.MethodHandles.lookup());\n");
+            for (FieldSpec spec : handles) {
+                sb.append("            ").append(handle(spec)).append(" = lookup.findVarHandle(")
+                        .append(recordType).append(".class, \"").append(spec.name()).append("\", ")
+                        .append(spec.type()).append(".class);\n");
+            }
+            sb.append("        } catch (ReflectiveOperationException e) {\n");
+            sb.append("            throw new ExceptionInInitializerError(e);\n");
+            sb.append("        }\n    }\n");
+        }
+        sb.append("\n    private volatile ").append(PACKAGE).append(".utils.interfaces.ColumnReader[] delegates;\n\n");
+
+        // recordClass / columns / newInstance
+        sb.append("    @Override\n    public Class<").append(recordType).append("> recordClass() {\n")
+                .append("        return ").append(recordType).append(".class;\n    }\n\n");
+        sb.append("    @Override\n    public String[] columns() {\n        return COLUMNS.clone();\n    }\n\n");
+        sb.append("    @Override\n    public ").append(recordType).append(" newInstance() {\n")
+                .append("        return ").append(instantiable ? "new " + recordType + "()" : "null").append(";\n    }\n\n");
+
+        // hydrate
+        sb.append("    @Override\n    public void hydrate(").append(recordType)
+                .append(" target, java.sql.ResultSet rs, int[] indexes) throws java.sql.SQLException {\n");
+        sb.append("        int i;\n");
+        for (int k = 0; k < columns.size(); k++) {
+            FieldSpec spec = columns.get(k);
+            sb.append("        if ((i = indexes[").append(k).append("]) > 0) ");
+            switch (spec.kind()) {
+                case INT, LONG, DOUBLE, FLOAT, SHORT, BYTE, BOOLEAN ->
+                        sb.append(assign(spec, "target", "rs." + spec.kind().getter + "(i)")).append("\n");
+                case BOXED_INT, BOXED_LONG, BOXED_DOUBLE, BOXED_FLOAT, BOXED_SHORT, BOXED_BYTE, BOXED_BOOLEAN ->
+                        sb.append("{\n            ").append(spec.kind().readType).append(" v = rs.").append(spec.kind().getter).append("(i);\n")
+                                .append("            if (!rs.wasNull()) ").append(assign(spec, "target", spec.type() + ".valueOf(v)")).append("\n        }\n");
+                case STRING, BIG_DECIMAL, BYTES, SQL_DATE, SQL_TIME, SQL_TIMESTAMP ->
+                        sb.append("{\n            ").append(spec.kind().readType).append(" v = rs.").append(spec.kind().getter).append("(i);\n")
+                                .append("            if (v != null) ").append(assign(spec, "target", "v")).append("\n        }\n");
+                case LOCAL_DATE, LOCAL_TIME, LOCAL_DATE_TIME -> {
+                    String conversion = spec.kind() == Kind.LOCAL_DATE ? "toLocalDate" : spec.kind() == Kind.LOCAL_TIME ? "toLocalTime" : "toLocalDateTime";
+                    sb.append("{\n            ").append(spec.kind().readType).append(" v = rs.").append(spec.kind().getter).append("(i);\n")
+                            .append("            if (v != null) ").append(assign(spec, "target", "v." + conversion + "()")).append("\n        }\n");
+                }
+                case DELEGATE -> sb.append("delegates()[").append(k).append("].read(rs, i, target);\n");
+            }
+        }
+        sb.append("    }\n\n");
+
+        // get
+        sb.append("    @Override\n    public Object get(").append(recordType).append(" record, int column) {\n");
+        sb.append("        switch (column) {\n");
+        for (int k = 0; k < columns.size(); k++) {
+            sb.append("            case ").append(k).append(": return ").append(read(columns.get(k), "record")).append(";\n");
+        }
+        sb.append("            default: throw new IndexOutOfBoundsException(column);\n        }\n    }\n\n");
+
+        // set
+        sb.append("    @Override\n    public void set(").append(recordType).append(" record, int column, Object value) {\n");
+        sb.append("        switch (column) {\n");
+        for (int k = 0; k < columns.size(); k++) {
+            sb.append("            case ").append(k).append(": ").append(assign(columns.get(k), "record", convert(columns.get(k), "value"))).append(" return;\n");
+        }
+        sb.append("            default: throw new IndexOutOfBoundsException(column);\n        }\n    }\n\n");
+
+        // bind
+        sb.append("    @Override\n    public void bind(java.sql.PreparedStatement ps, int parameterIndex, ").append(recordType)
+                .append(" record, int column) throws java.sql.SQLException {\n");
+        sb.append("        switch (column) {\n");
+        for (int k = 0; k < columns.size(); k++) {
+            FieldSpec spec = columns.get(k);
+            sb.append("            case ").append(k).append(": ");
+            if (spec.kind().isPrimitive()) {
+                sb.append("ps.").append(spec.kind().primitiveSetter).append("(parameterIndex, ").append(read(spec, "record")).append(");");
+            } else {
+                sb.append(PACKAGE).append(".utils.objects.DatabaseRecord.setObject(ps, parameterIndex, ").append(read(spec, "record")).append(");");
+            }
+            sb.append(" return;\n");
+        }
+        sb.append("            default: throw new IndexOutOfBoundsException(column);\n        }\n    }\n\n");
+
+        // primary key
+        sb.append("    @Override\n    public boolean hasPrimaryKey() {\n        return ").append(primaryKey != null).append(";\n    }\n\n");
+        sb.append("    @Override\n    public Object getPrimaryKey(").append(recordType).append(" record) {\n");
+        sb.append(primaryKey == null
+                ? "        throw new UnsupportedOperationException(\"No primary key field\");\n"
+                : "        return " + read(primaryKey, "record") + ";\n");
+        sb.append("    }\n\n");
+        sb.append("    @Override\n    public void setPrimaryKey(").append(recordType).append(" record, Object value) {\n");
+        sb.append(primaryKey == null
+                ? "        throw new UnsupportedOperationException(\"No primary key field\");\n"
+                : "        " + assign(primaryKey, "record", convert(primaryKey, "value")) + "\n");
+        sb.append("    }\n\n");
+
+        // delegated readers
+        sb.append("    private ").append(PACKAGE).append(".utils.interfaces.ColumnReader[] delegates() {\n");
+        sb.append("        ").append(PACKAGE).append(".utils.interfaces.ColumnReader[] readers = delegates;\n");
+        sb.append("        if (readers == null) {\n");
+        sb.append("            readers = ").append(PACKAGE).append(".utils.objects.RecordCodecs.delegateReaders(")
+                .append(recordType).append(".class, COLUMNS);\n");
+        sb.append("            delegates = readers;\n        }\n        return readers;\n    }\n");
+        sb.append("}\n");
+        w.write(sb.toString());
+    }
+
+    private static String handle(FieldSpec spec) {
+        return "FIELD_" + spec.name();
+    }
+
+    private static String read(FieldSpec spec, String target) {
+        return spec.direct()
+                ? target + "." + spec.name()
+                : "(" + spec.type() + ") " + handle(spec) + ".get(" + target + ")";
+    }
+
+    private static String assign(FieldSpec spec, String target, String expression) {
+        return spec.direct()
+                ? target + "." + spec.name() + " = " + expression + ";"
+                : handle(spec) + ".set(" + target + ", " + expression + ");";
+    }
+
+    private static String convert(FieldSpec spec, String value) {
+        return switch (spec.type()) {
+            case "int", "long", "double", "float", "short", "byte" -> "((Number) " + value + ")." + spec.type() + "Value()";
+            case "boolean" -> "(boolean) (Boolean) " + value;
+            case "char" -> "(char) (Character) " + value;
+            default -> "(" + spec.type() + ") " + value;
+        };
+    }
+
+    private static AnnotationMirror annotation(Element element, String name) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(name)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private static String stringValue(AnnotationMirror mirror, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return String.valueOf(entry.getValue().getValue());
+            }
+        }
+        return null;
+    }
+}